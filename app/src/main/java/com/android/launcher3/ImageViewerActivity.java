@@ -1,51 +1,219 @@
 package com.android.launcher3;
 
+import android.app.Activity;
+import android.app.WallpaperManager;
 import android.content.pm.PackageManager;
+import android.net.Uri;
 import android.os.Bundle;
 import android.os.Environment;
+import android.provider.MediaStore;
 import android.util.Log;
 import android.view.View;
 import android.widget.Button;
 import android.widget.TextView;
 import android.widget.Toast;
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.IntentSenderRequest;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.lifecycle.ViewModelProvider;
+import androidx.recyclerview.widget.RecyclerView;
 import androidx.viewpager2.widget.ViewPager2;
 
 import com.android.launcher3.wallpaper.FileAccessHelper;
+import com.android.launcher3.wallpaper.ImageCatalog;
 import com.android.launcher3.wallpaper.ImageItem;
 import com.android.launcher3.wallpaper.ImagePagerAdapter;
+import com.android.launcher3.wallpaper.MediaFileTypes;
+import com.android.launcher3.wallpaper.MemoryGovernor;
+import com.android.launcher3.wallpaper.PagePreloader;
+import com.android.launcher3.wallpaper.PerfMetrics;
 import com.android.launcher3.wallpaper.PermissionChecker;
+import com.android.launcher3.wallpaper.SlideshowController;
+import com.android.launcher3.wallpaper.SwipeFrameMonitor;
+import com.android.launcher3.wallpaper.WallpaperApplier;
+import com.android.launcher3.wallpaper.WallpaperDeleter;
+import com.android.launcher3.wallpaper.WallpaperDirectoryWatcher;
+import com.android.launcher3.wallpaper.WallpaperGlideModule;
+import com.google.android.material.snackbar.BaseTransientBottomBar;
+import com.google.android.material.snackbar.Snackbar;
 
-import java.io.File;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class ImageViewerActivity extends AppCompatActivity {
     private static final String TAG = "ImageViewerActivity";
+    // 壁纸目录相对外部存储根目录的路径
+    static final String WALLPAPER_RELATIVE_PATH = "LionWallpaper/";
+    // 内置PAG动画在assets中的目录
+    private static final String PAG_ASSET_DIR = "wallpapers";
+    // 删除后可以撤销的时间
+    private static final int UNDO_WINDOW_MS = 4000;
     
     private ViewPager2 viewPager;
     private ImagePagerAdapter adapter;
-    private List<ImageItem> imageList;
+    private PagePreloader preloader;
+    // 幻灯片自动翻页，跟随Adapter重新创建
+    private SlideshowController slideshow;
+    private long slideshowIntervalMs = SlideshowController.DEFAULT_INTERVAL_MS;
+    private boolean slideshowShuffle;
+    private ImageCatalog imageList;
     
     private TextView tvCurrentPosition;
     private TextView tvFileName;
     private TextView tvFileInfo;
     private Button btnDelete;
     private Button btnReload;
+    private Button btnApply;
+    private Button btnSlideshow;
     
     private int currentPosition = 0;
     
+    // 页面列表和扫描状态，配置变化时保留
+    private ImageViewerViewModel viewModel;
+    // 进程被杀后重建时要回到的页面
+    private long restoreItemId = RecyclerView.NO_ID;
+    private WallpaperDirectoryWatcher directoryWatcher;
+    private SwipeFrameMonitor swipeFrameMonitor;
+    private MemoryGovernor memoryGovernor;
+    private boolean sdcardLoaded = false;
+    
+    private WallpaperDeleter deleter;
+    private Snackbar applySnackbar;
+    private Snackbar undoSnackbar;
+    // 撤销期内被移除的条目原来的位置，撤销时按位置放回
+    private final Map<Long, Integer> removedPositions = new HashMap<>();
+    // 等待用户在系统对话框中确认删除的请求，同一时间只弹一个对话框，其余排队
+    private final ArrayDeque<DeleteConsentRequest> consentQueue = new ArrayDeque<>();
+    private final ActivityResultLauncher<IntentSenderRequest> deleteConsentLauncher =
+            registerForActivityResult(new ActivityResultContracts.StartIntentSenderForResult(), result -> {
+                DeleteConsentRequest request = consentQueue.poll();
+                if (request == null) return;
+                if (result.getResultCode() == Activity.RESULT_OK) {
+                    deleter.onConsentGranted(request.items);
+                    if (preloader != null) {
+                        preloader.evict(request.items);
+                    }
+                    Toast.makeText(this, "已删除 " + request.items.size() + " 个文件", Toast.LENGTH_SHORT).show();
+                } else {
+                    // 用户拒绝，文件还在，重新扫描放回页面
+                    refreshSdcardFiles(false);
+                }
+                launchNextDeleteConsent();
+            });
+    
+    private static final class DeleteConsentRequest {
+        final List<ImageItem> items;
+        final List<Uri> uris;
+        
+        DeleteConsentRequest(List<ImageItem> items, List<Uri> uris) {
+            this.items = items;
+            this.uris = uris;
+        }
+    }
+    
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_image_viewer);
         
+        viewModel = new ViewModelProvider(this).get(ImageViewerViewModel.class);
+        viewModel.setListener(catalogListener);
+        viewModel.setApplyListener(applyListener);
+        directoryWatcher = new WallpaperDirectoryWatcher(getScanDirectories(), this::onDirectoriesChanged);
+        swipeFrameMonitor = new SwipeFrameMonitor(this);
+        deleter = new WallpaperDeleter(this);
+        memoryGovernor = new MemoryGovernor(this);
+        memoryGovernor.register();
+        
         initViews();
-        checkPermissionsAndLoad();
+        if (viewModel.hasCatalog()) {
+            // 配置变化后重建，直接使用保留的列表
+            restoreFromViewModel();
+        } else {
+            checkPermissionsAndLoad();
+        }
         setupListeners();
     }
     
+    @Override
+    protected void onStart() {
+        super.onStart();
+        memoryGovernor.onForeground();
+        if (sdcardLoaded) {
+            directoryWatcher.startWatching();
+        }
+    }
+    
+    @Override
+    protected void onRestart() {
+        super.onRestart();
+        // 后台期间没有监听，回到前台时增量刷新一次
+        if (sdcardLoaded) {
+            refreshSdcardFiles(false);
+        }
+    }
+    
+    @Override
+    protected void onResume() {
+        super.onResume();
+        swipeFrameMonitor.start();
+        if (adapter != null) {
+            adapter.getPlaybackManager().onResume();
+        }
+        if (slideshow != null) {
+            slideshow.onResume();
+        }
+    }
+    
+    @Override
+    protected void onPause() {
+        if (slideshow != null) {
+            slideshow.onPause();
+        }
+        if (adapter != null) {
+            adapter.getPlaybackManager().onPause();
+        }
+        swipeFrameMonitor.stop();
+        super.onPause();
+    }
+    
+    @Override
+    protected void onStop() {
+        // 离开页面视为确认删除，撤销提示不会再显示
+        commitPendingDeletes();
+        directoryWatcher.stopWatching();
+        super.onStop();
+    }
+    
+    @Override
+    protected void onDestroy() {
+        viewModel.setListener(null);
+        // 设置壁纸由ViewModel持有，旋转时继续进行，重建后的Activity重新显示进度
+        viewModel.setApplyListener(null);
+        deleter.shutdown();
+        memoryGovernor.unregister();
+        if (slideshow != null) {
+            slideshow.release();
+        }
+        if (preloader != null) {
+            preloader.release();
+        }
+        if (adapter != null) {
+            adapter.getPlaybackManager().releaseAll();
+        }
+        super.onDestroy();
+    }
+    
     private void initViews() {
         viewPager = findViewById(R.id.viewPager);
         tvCurrentPosition = findViewById(R.id.tvCurrentPosition);
@@ -53,11 +221,35 @@ public class ImageViewerActivity extends AppCompatActivity {
         tvFileInfo = findViewById(R.id.tvFileInfo);
         btnDelete = findViewById(R.id.btnDelete);
         btnReload = findViewById(R.id.btnReload);
+        btnApply = findViewById(R.id.btnApply);
+        btnSlideshow = findViewById(R.id.btnSlideshow);
+    }
+    
+    private void restoreFromViewModel() {
+        imageList = viewModel.getCatalog();
+        setupViewPager();
+        currentPosition = Math.min(viewModel.getCurrentPosition(), Math.max(imageList.size() - 1, 0));
+        viewPager.setCurrentItem(currentPosition, false);
+        updatePositionInfo();
+        updateFileInfo();
+        
+        // 扫描还没完成时后续的结果会回调到这个Activity
+        if (viewModel.isSdcardLoaded()) {
+            sdcardLoaded = true;
+            directoryWatcher.updateDirectories(viewModel.getScannedDirectories());
+        }
+        if (viewModel.isApplying()) {
+            showApplyProgress(viewModel.getApplyProgress());
+        }
     }
     
     private void checkPermissionsAndLoad() {
+        // 进程被杀后重建，扫描完成后回到之前的页面
+        restoreItemId = viewModel.getCurrentItemId();
         if (PermissionChecker.hasStoragePermission(this)) {
             loadAllData();
+        } else if (viewModel.isLocalOnly()) {
+            loadLocalResourcesOnly();
         } else {
             showPermissionDialog();
         }
@@ -78,23 +270,17 @@ public class ImageViewerActivity extends AppCompatActivity {
     }
     
     private void loadAllData() {
-        imageList = new ArrayList<>();
+        imageList = new ImageCatalog();
         
         // 添加本地资源
         addLocalResources();
+        viewModel.setCatalog(imageList);
+        viewModel.setLocalOnly(false);
         
-        // 添加SDCard文件
-        addSdcardFiles();
-        
+        // 先显示本地资源，SDCard文件在后台扫描后分批加入
         setupViewPager();
         
-        Log.d(TAG, "数据加载完成，总共: " + imageList.size() + " 个文件");
-        Log.d(TAG, "SDCard文件: " + getSdcardCount() + " 个");
-        Log.d(TAG, "本地资源: " + getLocalCount() + " 个");
-        
-        if (getSdcardCount() == 0) {
-            Toast.makeText(this, "未找到SDCard文件，请检查权限和文件路径", Toast.LENGTH_LONG).show();
-        }
+        viewModel.loadSdcardFiles(getScanDirectories(), getKnownSdcardFiles());
     }
     
     private void addLocalResources() {
@@ -114,45 +300,93 @@ public class ImageViewerActivity extends AppCompatActivity {
         };
         
         for (int i = 0; i < pngResources.length; i++) {
-            ImageItem item = new ImageItem(pngResources[i], pngNames[i], false);
+            ImageItem item = new ImageItem(pngResources[i], pngNames[i]);
             imageList.add(item);
         }
+        
+        // 添加内置PAG动画，放在assets/wallpapers下（不压缩，由libpag直接读取APK中的数据）
+        try {
+            String[] pagAssets = getAssets().list(PAG_ASSET_DIR);
+            if (pagAssets != null) {
+                for (String name : pagAssets) {
+                    if (MediaFileTypes.isPag(name)) {
+                        String title = name.substring(0, name.length() - ".pag".length());
+                        imageList.add(ImageItem.fromAsset(PAG_ASSET_DIR + "/" + name, title));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "无法读取内置PAG列表: " + e.getMessage());
+        }
     }
     
-    private void addSdcardFiles() {
-        // 测试多个可能的目录路径
-        String[] possibleDirectories = {
-            "/storage/emulated/0/LionWallpaper",
-            "/sdcard/LionWallpaper",
-            Environment.getExternalStorageDirectory() + "/LionWallpaper"
-        };
-        
-        List<String> allSdcardFiles = new ArrayList<>();
+    // 翻页时更新当前位置和页面信息，重建ViewPager适配器时不重复注册
+    private final ViewPager2.OnPageChangeCallback pageInfoCallback = new ViewPager2.OnPageChangeCallback() {
+        @Override
+        public void onPageSelected(int position) {
+            super.onPageSelected(position);
+            currentPosition = position;
+            viewModel.setCurrentPosition(position);
+            updatePositionInfo();
+            updateFileInfo();
+        }
+    };
+    
+    private final ImageViewerViewModel.Listener catalogListener = new ImageViewerViewModel.Listener() {
+        @Override
+        public void onItemsAppended(List<ImageItem> batch) {
+            // 条目已经加入imageList（和ViewModel是同一个列表）
+            adapter.appendItems(batch);
+            updatePositionInfo();
+            Log.d(TAG, "成功添加SDCard文件: " + batch.size() + " 个");
+        }
         
-        for (String directory : possibleDirectories) {
-            Log.d(TAG, "扫描目录: " + directory);
-            List<String> files = FileAccessHelper.scanDirectory(directory);
-            allSdcardFiles.addAll(files);
+        @Override
+        public void onCatalogRefreshed(ImageCatalog refreshedList) {
+            applyRefreshedList(refreshedList);
         }
         
-        // 如果没有扫描到文件，尝试直接添加已知文件路径
-        if (allSdcardFiles.isEmpty()) {
-            Log.d(TAG, "目录扫描未找到文件，尝试直接添加已知文件");
-            addKnownSdcardFiles();
-        } else {
-            // 添加扫描到的文件
-            for (String filePath : allSdcardFiles) {
-                ImageItem item = new ImageItem(filePath, new File(filePath).getName());
-                imageList.add(item);
-                Log.d(TAG, "成功添加SDCard文件: " + filePath);
+        @Override
+        public void onScanComplete(boolean isReload, long elapsedMs) {
+            onSdcardScanComplete(isReload, elapsedMs);
+        }
+    };
+    
+    /**
+     * 重新扫描SDCard文件，扫描完成后整体替换并按差异更新页面，保留当前浏览位置
+     */
+    private void refreshSdcardFiles(boolean isReload) {
+        viewModel.refreshSdcardFiles(getScanDirectories(), getKnownSdcardFiles(), isReload);
+    }
+    
+    private void applyRefreshedList(ImageCatalog refreshedList) {
+        // 撤销期内或正在删除的文件还在磁盘上，不能被扫描结果放回页面
+        for (int i = refreshedList.size() - 1; i >= 0; i--) {
+            if (deleter.isDeleting(refreshedList.get(i).getStableId())) {
+                refreshedList.remove(i);
             }
         }
+        applyListChange(refreshedList);
     }
     
-    private void addKnownSdcardFiles() {
-        // 直接添加已知的文件路径进行测试
+    private void onDirectoriesChanged(Set<String> directories) {
+        viewModel.invalidateDirectories(directories);
+        refreshSdcardFiles(false);
+    }
+    
+    private String[] getScanDirectories() {
+        // 测试多个可能的目录路径
+        return new String[] {
+            "/storage/emulated/0/LionWallpaper",
+            "/sdcard/LionWallpaper",
+            Environment.getExternalStorageDirectory() + "/LionWallpaper"
+        };
+    }
+    
+    private String[] getKnownSdcardFiles() {
+        // 目录扫描没有结果时直接尝试这些已知文件
         String basePath = Environment.getExternalStorageDirectory().getAbsolutePath();
-        String[] testFiles = {
+        return new String[] {
                 basePath + "/LionWallpaper/111.png",
                 basePath + "/LionWallpaper/222.jpg",
                 basePath + "/LionWallpaper/blue_bmp.pag",
@@ -160,33 +394,55 @@ public class ImageViewerActivity extends AppCompatActivity {
                 basePath + "/LionWallpaper/white_bmp.pag",
                 basePath + "/LionWallpaper/test.pag"
         };
-//        String[] testFiles = {
-//            "/storage/emulated/0/LionWallpaper/111.png",
-//            "/storage/emulated/0/LionWallpaper/222.pag",
-//            "/storage/emulated/0/LionWallpaper/333.png",
-//            "/sdcard/LionWallpaper/111.png",
-//            "/sdcard/LionWallpaper/222.pag"
-//        };
-        
-        for (String filePath : testFiles) {
-            if (FileAccessHelper.isFileAccessible(filePath)) {
-                ImageItem item = new ImageItem(filePath, new File(filePath).getName());
-                imageList.add(item);
-                Log.d(TAG, "直接添加成功: " + filePath);
-                
-                // 显示文件信息用于调试
-                String fileInfo = FileAccessHelper.getFileInfo(filePath);
-                Log.d(TAG, "文件信息: " + fileInfo);
-            } else {
-                Log.w(TAG, "文件不可访问: " + filePath);
-            }
+    }
+    
+    private void onSdcardScanComplete(boolean isReload, long elapsedMs) {
+        // 子目录也要监听，新加入的子目录在下一次扫描后开始监听
+        directoryWatcher.updateDirectories(viewModel.getScannedDirectories());
+        if (!sdcardLoaded) {
+            sdcardLoaded = true;
+            directoryWatcher.startWatching();
+        }
+        
+        Log.d(TAG, "数据加载完成，总共: " + imageList.size() + " 个文件，耗时: " + elapsedMs + "ms");
+        Log.d(TAG, "SDCard文件: " + getSdcardCount() + " 个");
+        Log.d(TAG, "本地资源: " + getLocalCount() + " 个");
+        
+        updatePositionInfo();
+        updateFileInfo();
+        restoreCurrentItem();
+        
+        if (isReload) {
+            Toast.makeText(this, "重新加载完成，SDCard文件: " + getSdcardCount() + " 个",
+                    Toast.LENGTH_SHORT).show();
+        } else if (getSdcardCount() == 0) {
+            Toast.makeText(this, "未找到SDCard文件，请检查权限和文件路径", Toast.LENGTH_LONG).show();
         }
     }
     
+    /**
+     * 进程被杀后重建时，列表加载完成后回到之前浏览的页面
+     */
+    private void restoreCurrentItem() {
+        if (restoreItemId == RecyclerView.NO_ID) return;
+        final long itemId = restoreItemId;
+        restoreItemId = RecyclerView.NO_ID;
+        // 分批追加的差异可能还没生效，等列表提交后再定位
+        adapter.updateData(imageList, () -> {
+            int position = adapter.findPositionById(itemId);
+            if (position != RecyclerView.NO_POSITION && position != viewPager.getCurrentItem()) {
+                viewPager.setCurrentItem(position, false);
+            }
+        });
+    }
+    
     private void loadLocalResourcesOnly() {
-        imageList = new ArrayList<>();
+        imageList = new ImageCatalog();
         addLocalResources();
+        viewModel.setCatalog(imageList);
+        viewModel.setLocalOnly(true);
         setupViewPager();
+        restoreCurrentItem();
         Toast.makeText(this, "已加载 " + imageList.size() + " 个内置资源", Toast.LENGTH_SHORT).show();
     }
     
@@ -218,22 +474,15 @@ public class ImageViewerActivity extends AppCompatActivity {
 //    }
     
     private int getSdcardCount() {
-        int count = 0;
-        for (ImageItem item : imageList) {
-            if (item.isFromSDCard()) count++;
-        }
-        return count;
+        return imageList.getSdcardCount();
     }
     
     private int getLocalCount() {
-        int count = 0;
-        for (ImageItem item : imageList) {
-            if (item.isFromLocal()) count++;
-        }
-        return count;
+        return imageList.getLocalCount();
     }
     
     private void setupViewPager() {
+        ImagePagerAdapter oldAdapter = adapter;
         adapter = new ImagePagerAdapter(this, imageList);
         
         adapter.setOnItemClickListener(new ImagePagerAdapter.OnItemClickListener() {
@@ -244,21 +493,46 @@ public class ImageViewerActivity extends AppCompatActivity {
             
             @Override
             public void onItemLongClick(int position) {
-                showDeleteConfirmDialog(position);
+                // 长按选中多页，再点删除按钮批量删除
+                adapter.toggleSelection(position);
+                updateDeleteButton();
             }
         });
         
         viewPager.setAdapter(adapter);
         
-        viewPager.registerOnPageChangeCallback(new ViewPager2.OnPageChangeCallback() {
-            @Override
-            public void onPageSelected(int position) {
-                super.onPageSelected(position);
-                currentPosition = position;
-                updatePositionInfo();
-                updateFileInfo();
-            }
-        });
+        // 预加载前后页面，翻页时取消不在范围内的预加载
+        if (preloader != null) {
+            viewPager.unregisterOnPageChangeCallback(preloader);
+            preloader.release();
+        }
+        if (oldAdapter != null) {
+            viewPager.unregisterOnPageChangeCallback(oldAdapter.getPlaybackManager());
+            oldAdapter.getPlaybackManager().releaseAll();
+        }
+        preloader = new PagePreloader(this, adapter);
+        viewPager.registerOnPageChangeCallback(preloader);
+        // 内存紧张时由它缩小预加载范围和释放非选中页的PAG缓存
+        memoryGovernor.attach(preloader, adapter.getPlaybackManager());
+        // 只有选中页播放PAG动画
+        viewPager.registerOnPageChangeCallback(adapter.getPlaybackManager());
+        viewPager.unregisterOnPageChangeCallback(swipeFrameMonitor);
+        viewPager.registerOnPageChangeCallback(swipeFrameMonitor);
+        
+        // 新的Adapter上继续正在进行的幻灯片
+        boolean slideshowRunning = slideshow != null && slideshow.isRunning();
+        if (slideshow != null) {
+            viewPager.unregisterOnPageChangeCallback(slideshow);
+            slideshow.release();
+        }
+        slideshow = new SlideshowController(this, viewPager, adapter);
+        viewPager.registerOnPageChangeCallback(slideshow);
+        if (slideshowRunning) {
+            slideshow.start(slideshowIntervalMs, slideshowShuffle);
+        }
+        
+        viewPager.unregisterOnPageChangeCallback(pageInfoCallback);
+        viewPager.registerOnPageChangeCallback(pageInfoCallback);
         
         updatePositionInfo();
         updateFileInfo();
@@ -266,12 +540,28 @@ public class ImageViewerActivity extends AppCompatActivity {
     
     private void setupListeners() {
         btnDelete.setOnClickListener(v -> {
-            showDeleteConfirmDialog(currentPosition);
+            if (adapter != null && !adapter.getSelectedIds().isEmpty()) {
+                showDeleteSelectedDialog();
+            } else {
+                showDeleteConfirmDialog(currentPosition);
+            }
         });
         
         btnReload.setOnClickListener(v -> {
             reloadSdcardFiles();
         });
+        
+        btnApply.setOnClickListener(v -> {
+            showApplyWallpaperDialog();
+        });
+        
+        btnSlideshow.setOnClickListener(v -> {
+            if (slideshow != null && slideshow.isRunning()) {
+                stopSlideshow();
+            } else {
+                showSlideshowDialog();
+            }
+        });
     }
     
     private void updatePositionInfo() {
@@ -286,6 +576,9 @@ public class ImageViewerActivity extends AppCompatActivity {
             return;
         }
         
+        if (currentPosition >= imageList.size()) {
+            currentPosition = imageList.size() - 1;
+        }
         ImageItem currentItem = imageList.get(currentPosition);
         tvFileName.setText(currentItem.getTitle());
         
@@ -324,61 +617,322 @@ public class ImageViewerActivity extends AppCompatActivity {
             .setTitle("确认删除")
             .setMessage(message)
             .setPositiveButton("删除", (dialog, which) -> {
-                deleteItem(position);
+                List<ImageItem> items = new ArrayList<>(1);
+                items.add(item);
+                deleteItems(items);
             })
             .setNegativeButton("取消", null)
             .show();
     }
+    
+    private void showDeleteSelectedDialog() {
+        Set<Long> selectedIds = adapter.getSelectedIds();
+        final List<ImageItem> items = new ArrayList<>(selectedIds.size());
+        for (ImageItem item : imageList) {
+            if (selectedIds.contains(item.getStableId())) {
+                items.add(item);
+            }
+        }
+        if (items.isEmpty()) {
+            adapter.clearSelection();
+            updateDeleteButton();
+            return;
+        }
+        
+        new AlertDialog.Builder(this)
+            .setTitle("确认删除")
+            .setMessage("确定要删除选中的 " + items.size() + " 个文件吗？")
+            .setPositiveButton("删除", (dialog, which) -> deleteItems(items))
+            .setNeutralButton("取消选择", (dialog, which) -> {
+                adapter.clearSelection();
+                updateDeleteButton();
+            })
+            .setNegativeButton("取消", null)
+            .show();
+    }
+    
+    private void updateDeleteButton() {
+        int selected = adapter != null ? adapter.getSelectedIds().size() : 0;
+        btnDelete.setText(selected > 0 ? "删除选中(" + selected + ")" : "删除当前");
+    }
+    
+    private void showSlideshowDialog() {
+        if (slideshow == null || imageList.size() < 2) {
+            Toast.makeText(this, "至少需要两张图片", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        
+        final long[] intervals = {3_000L, 5_000L, 10_000L, 30_000L, 60_000L};
+        String[] labels = new String[intervals.length];
+        int checked = 0;
+        for (int i = 0; i < intervals.length; i++) {
+            labels[i] = "每 " + intervals[i] / 1000 + " 秒";
+            if (intervals[i] == slideshowIntervalMs) {
+                checked = i;
+            }
+        }
+        final int[] selected = {checked};
+        
+        new AlertDialog.Builder(this)
+            .setTitle("幻灯片（PAG动画播放一遍后翻页）")
+            .setSingleChoiceItems(labels, checked, (dialog, which) -> selected[0] = which)
+            .setPositiveButton("顺序播放", (dialog, which) -> startSlideshow(intervals[selected[0]], false))
+            .setNeutralButton("随机播放", (dialog, which) -> startSlideshow(intervals[selected[0]], true))
+            .setNegativeButton("取消", null)
+            .show();
+    }
+    
+    private void startSlideshow(long intervalMs, boolean shuffle) {
+        slideshowIntervalMs = intervalMs;
+        slideshowShuffle = shuffle;
+        slideshow.start(intervalMs, shuffle);
+        btnSlideshow.setText("停止");
+        // 隐藏信息栏全屏播放，点击页面可以再显示
+        findViewById(R.id.topInfoLayout).setVisibility(View.GONE);
+        findViewById(R.id.bottomIndicator).setVisibility(View.GONE);
+    }
+    
+    private void stopSlideshow() {
+        slideshow.stop();
+        btnSlideshow.setText("幻灯片");
+    }
+    
+    private void showApplyWallpaperDialog() {
+        if (imageList == null || currentPosition < 0 || currentPosition >= imageList.size()) return;
+        
+        final ImageItem item = imageList.get(currentPosition);
+        if (!WallpaperApplier.canApply(item)) {
+            Toast.makeText(this, "PAG动画不能设为壁纸", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        
+        final int[] targets = {
+            WallpaperManager.FLAG_SYSTEM,
+            WallpaperManager.FLAG_LOCK,
+            WallpaperManager.FLAG_SYSTEM | WallpaperManager.FLAG_LOCK
+        };
+        new AlertDialog.Builder(this)
+            .setTitle("设为壁纸")
+            .setItems(new String[] {"主屏幕", "锁屏", "主屏幕和锁屏"},
+                    (dialog, which) -> applyWallpaper(item, targets[which]))
+            .setNegativeButton("取消", null)
+            .show();
+    }
+    
+    private void applyWallpaper(ImageItem item, int which) {
+        viewModel.applyWallpaper(item, which);
+        showApplyProgress(0);
+    }
+    
+    /**
+     * 显示设置壁纸的进度条，配置变化重建后按ViewModel中的进度恢复
+     */
+    private void showApplyProgress(int percent) {
+        if (applySnackbar != null) {
+            applySnackbar.dismiss();
+        }
+        final Snackbar snackbar = Snackbar.make(viewPager, applyProgressText(percent), Snackbar.LENGTH_INDEFINITE);
+        snackbar.setAction("取消", v -> {
+            viewModel.cancelApply();
+            if (applySnackbar == snackbar) {
+                applySnackbar = null;
+            }
+        });
+        applySnackbar = snackbar;
+        snackbar.show();
+    }
+    
+    private static String applyProgressText(int percent) {
+        return percent > 0 ? "正在设置壁纸... " + percent + "%" : "正在设置壁纸...";
+    }
+    
+    private final ImageViewerViewModel.ApplyListener applyListener = new ImageViewerViewModel.ApplyListener() {
+        @Override
+        public void onApplyProgress(int percent) {
+            if (applySnackbar != null) {
+                applySnackbar.setText(applyProgressText(percent));
+            }
+        }
+        
+        @Override
+        public void onApplyComplete(boolean success, String message) {
+            if (applySnackbar != null) {
+                applySnackbar.dismiss();
+                applySnackbar = null;
+            }
+            Toast.makeText(ImageViewerActivity.this, message, Toast.LENGTH_SHORT).show();
+        }
+    };
+    
     private void reloadSdcardFiles() {
         if (!PermissionChecker.hasStoragePermission(this)) {
             Toast.makeText(this, "没有存储权限", Toast.LENGTH_SHORT).show();
             return;
         }
 
-        // 移除现有的SDCard文件，保留本地资源
-        List<ImageItem> localItems = new ArrayList<>();
-        for (ImageItem item : imageList) {
-            if (item.isFromLocal()) {
-                localItems.add(item);
-            }
+        // 扫描完成后按差异更新，不再整体刷新和跳回第一页
+        refreshSdcardFiles(true);
+    }
+    /**
+     * 先从页面中移除并显示撤销提示，撤销期结束后才在后台删除文件
+     */
+    private void deleteItems(List<ImageItem> items) {
+        // 上一次删除的撤销期提前结束，新的提示只负责这一批
+        commitPendingDeletes();
+        
+        Set<Long> ids = new HashSet<>(items.size() * 2);
+        for (ImageItem item : items) {
+            ids.add(item.getStableId());
         }
-
-        imageList = localItems;
-        addSdcardFiles();
-
-        if (adapter != null) {
-            adapter.updateData(imageList); // 现在这个方法存在了
-
-            // 重置到第一页
-            if (!imageList.isEmpty()) {
-                viewPager.setCurrentItem(0, false);
-                currentPosition = 0;
+        ImageCatalog remaining = new ImageCatalog(imageList.size());
+        for (int i = 0; i < imageList.size(); i++) {
+            ImageItem item = imageList.get(i);
+            if (ids.contains(item.getStableId())) {
+                removedPositions.put(item.getStableId(), i);
+            } else {
+                remaining.add(item);
             }
-
-            updatePositionInfo();
-            updateFileInfo();
         }
-
-        Toast.makeText(this, "重新加载完成，SDCard文件: " + getSdcardCount() + " 个",
-                Toast.LENGTH_SHORT).show();
+        deleter.enqueue(items);
+        adapter.clearSelection();
+        updateDeleteButton();
+        applyListChange(remaining);
+        
+        String message = items.size() == 1
+                ? "已删除: " + items.get(0).getTitle() : "已删除 " + items.size() + " 个文件";
+        final Snackbar snackbar = Snackbar.make(viewPager, message, Snackbar.LENGTH_INDEFINITE)
+                .setDuration(UNDO_WINDOW_MS)
+                .setAction("撤销", v -> undoDeletes());
+        snackbar.addCallback(new BaseTransientBottomBar.BaseCallback<Snackbar>() {
+            @Override
+            public void onDismissed(Snackbar bar, int event) {
+                // 被新的提示替换时，上一批已经提交过了
+                if (bar != undoSnackbar) return;
+                undoSnackbar = null;
+                if (event != DISMISS_EVENT_ACTION) {
+                    commitPendingDeletes();
+                }
+            }
+        });
+        undoSnackbar = snackbar;
+        snackbar.show();
     }
-    private void deleteItem(int position) {
-        if (position < 0 || position >= imageList.size()) return;
+    
+    private void undoDeletes() {
+        List<ImageItem> restored = deleter.undo();
+        if (restored.isEmpty()) return;
         
-        String deletedName = imageList.get(position).getTitle();
-        adapter.removeItem(position);
+        // 按原来的位置从前往后插回，位置超出当前列表时放到末尾
+        restored.sort((a, b) -> Integer.compare(
+                removedPositions.get(a.getStableId()), removedPositions.get(b.getStableId())));
+        ImageCatalog restoredList = new ImageCatalog(imageList.size() + restored.size());
+        restoredList.addAll(imageList);
+        for (ImageItem item : restored) {
+            int position = removedPositions.get(item.getStableId());
+            restoredList.add(Math.min(position, restoredList.size()), item);
+        }
+        removedPositions.clear();
+        applyListChange(restoredList);
+    }
+    
+    private void commitPendingDeletes() {
+        removedPositions.clear();
+        if (undoSnackbar != null) {
+            Snackbar snackbar = undoSnackbar;
+            undoSnackbar = null;
+            snackbar.dismiss();
+        }
+        if (!deleter.hasPending()) return;
         
-        if (imageList.isEmpty()) {
-            finish();
-        } else {
-            if (currentPosition >= imageList.size()) {
-                currentPosition = imageList.size() - 1;
+        deleter.commit(new WallpaperDeleter.Callback() {
+            @Override
+            public void onBatchDeleted(List<ImageItem> deleted) {
+                Log.d(TAG, "已删除一批文件: " + deleted.size() + " 个");
+                if (preloader != null) {
+                    preloader.evict(deleted);
+                }
             }
+            
+            @Override
+            public void onConsentRequired(List<ImageItem> items, List<Uri> uris) {
+                requestDeleteConsent(items, uris);
+            }
+            
+            @Override
+            public void onComplete(int deletedCount, int failedCount, long elapsedMs) {
+                if (failedCount > 0) {
+                    Toast.makeText(ImageViewerActivity.this, failedCount + " 个文件删除失败",
+                            Toast.LENGTH_SHORT).show();
+                    // 删除失败的文件还在，重新扫描放回页面
+                    refreshSdcardFiles(false);
+                } else if (imageList.isEmpty() && consentQueue.isEmpty()) {
+                    finish();
+                }
+            }
+        });
+    }
+    
+    private void requestDeleteConsent(List<ImageItem> items, List<Uri> uris) {
+        if (isFinishing() || isDestroyed()) {
+            return;
+        }
+        consentQueue.add(new DeleteConsentRequest(items, uris));
+        if (consentQueue.size() == 1) {
+            // 没有正在显示的确认对话框，直接弹出；否则等前一个结束后再弹
+            launchNextDeleteConsent();
+        }
+    }
+    
+    private void launchNextDeleteConsent() {
+        DeleteConsentRequest request = consentQueue.peek();
+        if (request == null || isFinishing() || isDestroyed()) {
+            return;
+        }
+        deleteConsentLauncher.launch(new IntentSenderRequest.Builder(
+                MediaStore.createDeleteRequest(getContentResolver(), request.uris).getIntentSender()).build());
+    }
+    
+    /**
+     * 替换页面列表，差异生效后保持当前页或停在原位置附近
+     */
+    private void applyListChange(ImageCatalog newList) {
+        final long currentId = currentPosition < imageList.size()
+                ? imageList.get(currentPosition).getStableId() : RecyclerView.NO_ID;
+        imageList = newList;
+        viewModel.setCatalog(newList);
+        adapter.updateData(imageList, () -> {
+            // 当前页还在就停留在它上面，被删除了则停在原位置附近
+            int position = adapter.findPositionById(currentId);
+            if (position == RecyclerView.NO_POSITION) {
+                position = Math.min(currentPosition, Math.max(imageList.size() - 1, 0));
+            }
+            if (position != viewPager.getCurrentItem()) {
+                viewPager.setCurrentItem(position, false);
+            }
+            currentPosition = position;
             updatePositionInfo();
             updateFileInfo();
-            
-            Toast.makeText(this, "已删除: " + deletedName, Toast.LENGTH_SHORT).show();
+        });
+    }
+    
+    /**
+     * 导出性能指标：adb shell dumpsys activity com.android.launcher3/.ImageViewerActivity perf [reset]
+     */
+    @Override
+    public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
+        if (args != null && args.length > 0 && "perf".equals(args[0])) {
+            try {
+                WallpaperGlideModule.reportCacheSizes();
+                writer.println(PerfMetrics.get().toJson().toString(2));
+            } catch (org.json.JSONException e) {
+                writer.println(PerfMetrics.get().toJson());
+            }
+            if (args.length > 1 && "reset".equals(args[1])) {
+                PerfMetrics.get().reset();
+            }
+            return;
         }
+        super.dump(prefix, fd, writer, args);
     }
     
     @Override
@@ -0,0 +1,261 @@
+package com.android.launcher3;
+
+import android.app.Application;
+import android.os.Build;
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.SavedStateHandle;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.android.launcher3.wallpaper.ImageCatalog;
+import com.android.launcher3.wallpaper.ImageItem;
+import com.android.launcher3.wallpaper.MediaCatalog;
+import com.android.launcher3.wallpaper.MediaStoreSource;
+import com.android.launcher3.wallpaper.WallpaperApplier;
+import com.android.launcher3.wallpaper.WallpaperScanner;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 图片查看器的数据：页面列表、扫描状态、当前页和进行中的设置壁纸操作
+ * 旋转或多窗口调整大小时Activity重建但这里保留，直接用已有的列表恢复页面，不重新扫描，
+ * 正在设置的壁纸也继续进行；
+ * 进程被杀后只从SavedStateHandle恢复当前页ID和目录缓存版本号，缓存未变时直接按缓存展开
+ */
+public class ImageViewerViewModel extends AndroidViewModel {
+    private static final String KEY_CURRENT_ID = "current_id";
+    private static final String KEY_CURRENT_POSITION = "current_position";
+    private static final String KEY_CATALOG_GENERATION = "catalog_generation";
+    private static final String KEY_LOCAL_ONLY = "local_only";
+
+    /**
+     * 扫描结果的接收方，由当前的Activity注册，所有回调都在主线程
+     */
+    public interface Listener {
+        /** 首次加载时新扫描到的一批条目，已加入getCatalog() */
+        void onItemsAppended(List<ImageItem> batch);
+
+        /** 重新扫描得到的完整列表，接收方决定何时替换 */
+        void onCatalogRefreshed(ImageCatalog refreshedList);
+
+        void onScanComplete(boolean isReload, long elapsedMs);
+    }
+
+    /**
+     * 设置壁纸进度的接收方，由当前的Activity注册，回调都在主线程
+     */
+    public interface ApplyListener {
+        void onApplyProgress(int percent);
+
+        void onApplyComplete(boolean success, String message);
+    }
+
+    private final SavedStateHandle savedState;
+    private final WallpaperScanner scanner;
+    private final WallpaperApplier applier;
+    private Listener listener;
+    private ApplyListener applyListener;
+
+    private ImageCatalog catalog;
+    private boolean sdcardLoaded;
+    private WallpaperApplier.Task applyTask;
+    private int applyProgress;
+
+    public ImageViewerViewModel(@NonNull Application application, @NonNull SavedStateHandle savedState) {
+        super(application);
+        this.savedState = savedState;
+        this.scanner = new WallpaperScanner(new MediaCatalog(application));
+        this.applier = new WallpaperApplier(application);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+            // 只有READ_MEDIA_IMAGES权限时直接使用系统索引，查询不到再扫描目录
+            scanner.setMediaStoreSource(new MediaStoreSource(application.getContentResolver(),
+                    ImageViewerActivity.WALLPAPER_RELATIVE_PATH));
+        }
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * 是否已有可直接显示的列表（配置变化后重建的Activity）
+     */
+    public boolean hasCatalog() {
+        return catalog != null;
+    }
+
+    public ImageCatalog getCatalog() {
+        return catalog;
+    }
+
+    public void setCatalog(ImageCatalog catalog) {
+        this.catalog = catalog;
+    }
+
+    public boolean isSdcardLoaded() {
+        return sdcardLoaded;
+    }
+
+    /**
+     * 上一次只加载了内置资源（没有存储权限），恢复时不再请求权限
+     */
+    public boolean isLocalOnly() {
+        Boolean localOnly = savedState.get(KEY_LOCAL_ONLY);
+        return localOnly != null && localOnly;
+    }
+
+    public void setLocalOnly(boolean localOnly) {
+        savedState.set(KEY_LOCAL_ONLY, localOnly);
+    }
+
+    public Set<String> getScannedDirectories() {
+        return scanner.getScannedDirectories();
+    }
+
+    public int getCurrentPosition() {
+        Integer position = savedState.get(KEY_CURRENT_POSITION);
+        return position != null ? position : 0;
+    }
+
+    /**
+     * 进程被杀前保存的当前页ID，没有时返回NO_ID
+     */
+    public long getCurrentItemId() {
+        Long id = savedState.get(KEY_CURRENT_ID);
+        return id != null ? id : RecyclerView.NO_ID;
+    }
+
+    /**
+     * 翻页时调用，只保存位置和稳定ID两个数
+     */
+    public void setCurrentPosition(int position) {
+        savedState.set(KEY_CURRENT_POSITION, position);
+        if (catalog != null && position >= 0 && position < catalog.size()) {
+            savedState.set(KEY_CURRENT_ID, catalog.get(position).getStableId());
+        }
+    }
+
+    /**
+     * 首次加载SDCard文件，扫描结果分批加入当前列表；
+     * 进程被杀后重建时先按保存的目录缓存版本恢复，显示后再在后台增量刷新一次
+     */
+    public void loadSdcardFiles(String[] directories, String[] fallbackFiles) {
+        Long generation = savedState.get(KEY_CATALOG_GENERATION);
+        WallpaperScanner.Callback callback = new WallpaperScanner.Callback() {
+            @Override
+            public void onBatch(List<ImageItem> batch) {
+                catalog.addAll(batch);
+                if (listener != null) listener.onItemsAppended(batch);
+            }
+
+            @Override
+            public void onComplete(int totalCount, long elapsedMs) {
+                if (generation != null) {
+                    // 缓存展开的结果可能落后于磁盘，目录没变化时刷新只需读取目录属性；
+                    // 刷新完成后才算扫描完成，Activity只收到一次onScanComplete
+                    refreshSdcardFiles(directories, fallbackFiles, false);
+                } else {
+                    onScanFinished(false, elapsedMs);
+                }
+            }
+        };
+        if (generation != null) {
+            scanner.restore(directories, fallbackFiles, generation, callback);
+        } else {
+            scanner.scan(directories, fallbackFiles, callback);
+        }
+    }
+
+    /**
+     * 重新扫描SDCard文件，完成后把完整列表交给Activity按差异替换
+     */
+    public void refreshSdcardFiles(String[] directories, String[] fallbackFiles, boolean isReload) {
+        // 保留本地资源，SDCard文件以新的扫描结果为准
+        final ImageCatalog refreshedList = new ImageCatalog(catalog.size());
+        for (ImageItem item : catalog) {
+            if (item.isFromLocal()) {
+                refreshedList.add(item);
+            }
+        }
+
+        scanner.scan(directories, fallbackFiles, new WallpaperScanner.Callback() {
+            @Override
+            public void onBatch(List<ImageItem> batch) {
+                refreshedList.addAll(batch);
+            }
+
+            @Override
+            public void onComplete(int totalCount, long elapsedMs) {
+                if (listener != null) {
+                    listener.onCatalogRefreshed(refreshedList);
+                } else {
+                    catalog = refreshedList;
+                }
+                onScanFinished(isReload, elapsedMs);
+            }
+        });
+    }
+
+    public void invalidateDirectories(Collection<String> directories) {
+        scanner.invalidate(directories);
+    }
+
+    public void setApplyListener(ApplyListener applyListener) {
+        this.applyListener = applyListener;
+    }
+
+    /**
+     * 在后台设置壁纸，替换掉进行中的设置；Activity重建时不会中断
+     * @param which WallpaperManager.FLAG_SYSTEM和/或FLAG_LOCK
+     */
+    public void applyWallpaper(ImageItem item, int which) {
+        cancelApply();
+        applyProgress = 0;
+        applyTask = applier.apply(item, which, new WallpaperApplier.Callback() {
+            @Override
+            public void onProgress(int percent) {
+                applyProgress = percent;
+                if (applyListener != null) applyListener.onApplyProgress(percent);
+            }
+
+            @Override
+            public void onComplete(boolean success, String message) {
+                applyTask = null;
+                if (applyListener != null) applyListener.onApplyComplete(success, message);
+            }
+        });
+    }
+
+    public boolean isApplying() {
+        return applyTask != null;
+    }
+
+    public int getApplyProgress() {
+        return applyProgress;
+    }
+
+    public void cancelApply() {
+        if (applyTask != null) {
+            applyTask.cancel();
+            applyTask = null;
+        }
+    }
+
+    private void onScanFinished(boolean isReload, long elapsedMs) {
+        sdcardLoaded = true;
+        savedState.set(KEY_CATALOG_GENERATION, scanner.getCatalogGeneration());
+        if (listener != null) listener.onScanComplete(isReload, elapsedMs);
+    }
+
+    @Override
+    protected void onCleared() {
+        listener = null;
+        applyListener = null;
+        scanner.shutdown();
+        cancelApply();
+        applier.shutdown();
+        super.onCleared();
+    }
+}
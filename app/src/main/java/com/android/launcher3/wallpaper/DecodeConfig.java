@@ -0,0 +1,83 @@
+package com.android.launcher3.wallpaper;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.util.DisplayMetrics;
+import android.util.Log;
+import com.bumptech.glide.load.DecodeFormat;
+import com.bumptech.glide.request.RequestOptions;
+
+/**
+ * 根据页面实际尺寸和设备内存预算决定图片的解码尺寸和格式
+ */
+public class DecodeConfig {
+    private static final String TAG = "DecodeConfig";
+
+    // 同时驻留的页面数：当前页 + 左右各一页离屏缓存
+    private static final int RESIDENT_PAGES = 3;
+    // 驻留页面的位图最多占应用内存上限的比例
+    private static final float BITMAP_BUDGET_RATIO = 0.25f;
+
+    private final int targetWidth;
+    private final int targetHeight;
+    private final boolean preferRgb565;
+    private final RequestOptions jpegOptions;
+    private final RequestOptions defaultOptions;
+
+    private DecodeConfig(int targetWidth, int targetHeight, boolean preferRgb565) {
+        this.targetWidth = targetWidth;
+        this.targetHeight = targetHeight;
+        this.preferRgb565 = preferRgb565;
+
+        RequestOptions base = new RequestOptions()
+                .override(targetWidth, targetHeight)
+                .centerInside();
+        // JPEG没有透明通道，RGB_565内存减半；其它格式由内存预算决定，
+        // PREFER_RGB_565遇到带透明通道的图片时Glide仍会使用ARGB_8888
+        this.jpegOptions = base.clone().format(DecodeFormat.PREFER_RGB_565);
+        this.defaultOptions = base.clone().format(preferRgb565
+                ? DecodeFormat.PREFER_RGB_565 : DecodeFormat.PREFER_ARGB_8888);
+    }
+
+    /**
+     * @param pageWidth 页面宽度（像素），未布局时传0，使用屏幕尺寸
+     * @param pageHeight 页面高度（像素），未布局时传0，使用屏幕尺寸
+     */
+    public static DecodeConfig create(Context context, int pageWidth, int pageHeight) {
+        DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+        int width = pageWidth > 0 ? pageWidth : metrics.widthPixels;
+        int height = pageHeight > 0 ? pageHeight : metrics.heightPixels;
+
+        ActivityManager activityManager =
+                (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        long memoryClassBytes = activityManager.getMemoryClass() * 1024L * 1024L;
+        long argbBytes = (long) width * height * 4 * RESIDENT_PAGES;
+        boolean preferRgb565 = activityManager.isLowRamDevice()
+                || argbBytes > memoryClassBytes * BITMAP_BUDGET_RATIO;
+
+        Log.d(TAG, "解码目标: " + width + "x" + height
+                + ", density: " + metrics.densityDpi
+                + ", memoryClass: " + activityManager.getMemoryClass() + "MB"
+                + ", RGB_565: " + preferRgb565);
+        return new DecodeConfig(width, height, preferRgb565);
+    }
+
+    public int getTargetWidth() { return targetWidth; }
+    public int getTargetHeight() { return targetHeight; }
+    public boolean isPreferRgb565() { return preferRgb565; }
+
+    /**
+     * 图片加载使用的选项，预加载时必须使用同样的选项才能命中内存缓存
+     */
+    public RequestOptions optionsFor(ImageItem item) {
+        return isJpeg(item) ? jpegOptions : defaultOptions;
+    }
+
+    public boolean matches(int pageWidth, int pageHeight) {
+        return targetWidth == pageWidth && targetHeight == pageHeight;
+    }
+
+    private static boolean isJpeg(ImageItem item) {
+        return item.getFormat() == MediaFileTypes.FORMAT_JPEG;
+    }
+}
@@ -0,0 +1,154 @@
+package com.android.launcher3.wallpaper;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 递归扫描壁纸目录，子目录分派到ForkJoin线程池并行刷新，
+ * 每个目录列出后立即按目录顺序交给Sink：先是目录自身的文件，再依次是各子目录，
+ * 不用等整棵目录树扫完
+ */
+public class DirectoryWalker {
+    // 扫描主要等待存储IO，少量线程就能让多个目录的读取重叠
+    private static final int MAX_PARALLELISM = 4;
+
+    public interface Sink {
+        /**
+         * 调用walk的线程回调，一个目录中通过过滤的文件，不会传入空列表
+         * @return false时停止，不再回调后续目录
+         */
+        boolean accept(List<MediaCatalog.Entry> entries);
+    }
+
+    private final MediaCatalog catalog;
+    private final ForkJoinPool pool;
+
+    public DirectoryWalker(MediaCatalog catalog) {
+        this.catalog = catalog;
+        int parallelism = Math.max(2,
+                Math.min(MAX_PARALLELISM, Runtime.getRuntime().availableProcessors()));
+        this.pool = new ForkJoinPool(parallelism, pool -> {
+            ForkJoinWorkerThread thread =
+                    ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("wallpaper-walker-" + thread.getPoolIndex());
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        }, null, false);
+    }
+
+    /**
+     * 扫描一个根目录，阻塞直到完成、被取消或sink返回false
+     * @param rootDirectory 规范路径
+     * @param visitedDirectories 收集扫描过的目录，需要线程安全
+     * @param cancelled 返回true时尽快结束，已交给sink的结果不完整
+     * @return sink返回false时为false
+     */
+    public boolean walk(String rootDirectory, ScanRules rules,
+            Set<String> visitedDirectories, BooleanSupplier cancelled, Sink sink) {
+        return drain(start(new WalkTask(rootDirectory, 0, rules, visitedDirectories, cancelled, false)), sink);
+    }
+
+    /**
+     * 只按缓存中记录的目录结构展开，不访问文件系统，交给sink的顺序和walk一致
+     */
+    public boolean walkCached(String rootDirectory, ScanRules rules,
+            Set<String> visitedDirectories, BooleanSupplier cancelled, Sink sink) {
+        return drain(start(new WalkTask(rootDirectory, 0, rules, visitedDirectories, cancelled, true)), sink);
+    }
+
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private WalkTask start(WalkTask root) {
+        pool.execute(root);
+        return root;
+    }
+
+    /**
+     * 按先序依次等待各目录列出完成并交给sink；各目录的列出在线程池中并行进行，
+     * 这里只决定交付顺序
+     */
+    private static boolean drain(WalkTask task, Sink sink) {
+        Node node = task.join();
+        if (!node.entries.isEmpty() && !sink.accept(node.entries)) {
+            return false;
+        }
+        for (WalkTask subtask : node.subtasks) {
+            if (!drain(subtask, sink)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * 一个目录的扫描结果：自身通过过滤的文件和已经开始的子目录任务
+     */
+    private static class Node {
+        static final Node EMPTY = new Node(Collections.<MediaCatalog.Entry>emptyList(),
+                Collections.<WalkTask>emptyList());
+
+        final List<MediaCatalog.Entry> entries;
+        final List<WalkTask> subtasks;
+
+        Node(List<MediaCatalog.Entry> entries, List<WalkTask> subtasks) {
+            this.entries = entries;
+            this.subtasks = subtasks;
+        }
+    }
+
+    private class WalkTask extends RecursiveTask<Node> {
+        private final String directory;
+        private final int depth;
+        private final ScanRules rules;
+        private final Set<String> visitedDirectories;
+        private final BooleanSupplier cancelled;
+        private final boolean cachedOnly;
+
+        WalkTask(String directory, int depth, ScanRules rules,
+                Set<String> visitedDirectories, BooleanSupplier cancelled, boolean cachedOnly) {
+            this.directory = directory;
+            this.depth = depth;
+            this.rules = rules;
+            this.visitedDirectories = visitedDirectories;
+            this.cancelled = cancelled;
+            this.cachedOnly = cachedOnly;
+        }
+
+        @Override
+        protected Node compute() {
+            if (cancelled.getAsBoolean() || !visitedDirectories.add(directory)) {
+                return Node.EMPTY;
+            }
+
+            MediaCatalog.Listing listing = cachedOnly
+                    ? catalog.getCachedListing(directory) : catalog.refreshDirectory(directory);
+
+            // 子目录全部交给线程池，不等它们完成，本目录的结果可以马上交付
+            List<WalkTask> subtasks = new ArrayList<>();
+            for (String subdirectory : listing.subdirectories) {
+                String name = subdirectory.substring(subdirectory.lastIndexOf(File.separatorChar) + 1);
+                if (rules.acceptsDirectory(name, depth + 1)) {
+                    WalkTask subtask = new WalkTask(subdirectory, depth + 1, rules,
+                            visitedDirectories, cancelled, cachedOnly);
+                    subtask.fork();
+                    subtasks.add(subtask);
+                }
+            }
+
+            List<MediaCatalog.Entry> result = new ArrayList<>(listing.entries.size());
+            for (MediaCatalog.Entry entry : listing.entries) {
+                if (rules.acceptsFile(entry.name)) {
+                    result.add(entry);
+                }
+            }
+            return new Node(result, subtasks);
+        }
+    }
+}
@@ -3,6 +3,9 @@ package com.android.launcher3.wallpaper;
 import android.content.Context;
 import android.util.Log;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -50,50 +53,73 @@ public class FileAccessHelper {
         }
     }
     
+    /**
+     * 扫描回调，返回false时停止扫描
+     */
+    public interface OnFileFoundListener {
+        boolean onFileFound(String filePath);
+    }
+    
     /**
      * 扫描目录下的图片和PAG文件
      */
     public static List<String> scanDirectory(String directoryPath) {
         List<String> fileList = new ArrayList<>();
+        scanDirectory(directoryPath, filePath -> {
+            fileList.add(filePath);
+            return true;
+        });
+        return fileList;
+    }
+    
+    /**
+     * 扫描目录下的图片和PAG文件，每找到一个文件就回调一次
+     * @return 找到的文件数
+     */
+    public static int scanDirectory(String directoryPath, OnFileFoundListener listener) {
+        int found = 0;
         
         try {
             File directory = new File(directoryPath);
             if (!directory.exists() || !directory.isDirectory()) {
                 Log.e(TAG, "目录不存在或不是目录: " + directoryPath);
-                return fileList;
+                return found;
             }
             
-            File[] files = directory.listFiles();
-            if (files == null) {
+            String[] names = directory.list();
+            if (names == null) {
                 Log.e(TAG, "无法读取目录内容: " + directoryPath);
-                return fileList;
+                return found;
             }
             
-            for (File file : files) {
-                if (file.isFile()) {
-                    String fileName = file.getName().toLowerCase();
-                    if (fileName.endsWith(".png") || 
-                        fileName.endsWith(".jpg") || 
-                        fileName.endsWith(".jpeg") ||
-                        fileName.endsWith(".pag")) {
-                        
-                        if (isFileAccessible(file.getAbsolutePath())) {
-                            fileList.add(file.getAbsolutePath());
-                            Log.d(TAG, "找到文件: " + file.getAbsolutePath());
-                        } else {
-                            Log.w(TAG, "文件不可访问: " + file.getAbsolutePath());
-                        }
-                    }
+            for (String name : names) {
+                // 先按扩展名过滤，只对候选文件读一次属性
+                if (!MediaFileTypes.isSupportedName(name)) continue;
+                
+                File file = new File(directory, name);
+                BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+                } catch (IOException e) {
+                    Log.w(TAG, "文件不可访问: " + file.getPath());
+                    continue;
+                }
+                if (!attributes.isRegularFile()) continue;
+                
+                found++;
+                if (!listener.onFileFound(file.getAbsolutePath())) {
+                    Log.d(TAG, "扫描被中止: " + directoryPath);
+                    return found;
                 }
             }
             
-            Log.d(TAG, "扫描完成，找到 " + fileList.size() + " 个文件");
+            Log.d(TAG, "扫描完成，找到 " + found + " 个文件");
         } catch (SecurityException e) {
             Log.e(TAG, "权限不足，无法扫描目录: " + directoryPath + ", 错误: " + e.getMessage());
         } catch (Exception e) {
             Log.e(TAG, "扫描目录异常: " + directoryPath + ", 错误: " + e.getMessage());
         }
         
-        return fileList;
+        return found;
     }
 }
\ No newline at end of file
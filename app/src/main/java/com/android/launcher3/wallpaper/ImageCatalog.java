@@ -0,0 +1,86 @@
+package com.android.launcher3.wallpaper;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+/**
+ * 页面列表，增删时同步维护各来源的数量，统计不需要遍历整个列表
+ */
+public class ImageCatalog extends AbstractList<ImageItem> implements RandomAccess {
+    private final ArrayList<ImageItem> items;
+    private int sdcardCount;
+    private int localCount;
+
+    public ImageCatalog() {
+        this.items = new ArrayList<>();
+    }
+
+    public ImageCatalog(int initialCapacity) {
+        this.items = new ArrayList<>(initialCapacity);
+    }
+
+    @Override
+    public ImageItem get(int index) {
+        return items.get(index);
+    }
+
+    @Override
+    public int size() {
+        return items.size();
+    }
+
+    @Override
+    public void add(int index, ImageItem item) {
+        items.add(index, item);
+        count(item, 1);
+        modCount++;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends ImageItem> collection) {
+        items.ensureCapacity(items.size() + collection.size());
+        return super.addAll(collection);
+    }
+
+    @Override
+    public ImageItem set(int index, ImageItem item) {
+        ImageItem previous = items.set(index, item);
+        count(previous, -1);
+        count(item, 1);
+        return previous;
+    }
+
+    @Override
+    public ImageItem remove(int index) {
+        ImageItem removed = items.remove(index);
+        count(removed, -1);
+        modCount++;
+        return removed;
+    }
+
+    @Override
+    public void clear() {
+        items.clear();
+        sdcardCount = 0;
+        localCount = 0;
+        modCount++;
+    }
+
+    public int getSdcardCount() {
+        return sdcardCount;
+    }
+
+    public int getLocalCount() {
+        return localCount;
+    }
+
+    private void count(ImageItem item, int delta) {
+        if (item.isFromSDCard()) {
+            sdcardCount += delta;
+        } else if (item.isFromLocal()) {
+            localCount += delta;
+        }
+    }
+}
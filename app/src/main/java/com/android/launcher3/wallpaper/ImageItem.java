@@ -3,83 +3,268 @@ package com.android.launcher3.wallpaper;
 import android.net.Uri;
 import java.io.File;
 
+/**
+ * 一个壁纸页面
+ * 字段都是基本类型，SDCard文件只保存所在目录和文件名，同一目录的条目共享目录字符串；
+ * 完整路径的File在第一次需要时创建并缓存，翻页时不再分配
+ */
 public class ImageItem {
     public static final int TYPE_IMAGE = 0;
     public static final int TYPE_PAG = 1;
     public static final int TYPE_RESOURCE = 2;
-    
+
     public static final int SOURCE_SDCARD = 0;
     public static final int SOURCE_LOCAL = 1;
-    
-    private String filePath;
-    private Uri fileUri;
-    private int type;
-    private String title;
-    private Integer resourceId;
-    private int source; // 0: SDCard, 1: Local
-    
+
+    // 资源ID不会为0，用0表示不是资源
+    private static final int NO_RESOURCE = 0;
+
+    private final String directory;
+    private final String name;
+    private final Uri fileUri;
+    private final String title;
+    private final int resourceId;
+    private final byte type;
+    private final byte format; // MediaFileTypes.FORMAT_*
+    private final byte source; // 0: SDCard, 1: Local
+    private final long stableId;
+    private long fileSize;
+    private long lastModified;
+    private int width;
+    private int height;
+    // 目录缓存中的平均颜色，0表示还没有
+    private final int placeholderColor;
+    // 懒创建
+    private File file;
+    private Object glideSource;
+
     // SDCard文件构造方法
     public ImageItem(String filePath, String title) {
-        this.filePath = filePath;
-        this.title = title;
-        this.type = getFileType(filePath);
-        this.source = SOURCE_SDCARD;
-        this.fileUri = null;
-        this.resourceId = null;
+        this(filePath, null, title);
     }
-    
+
     // SDCard文件带URI构造方法
     public ImageItem(String filePath, Uri fileUri, String title) {
-        this.filePath = filePath;
+        int slash = filePath != null ? filePath.lastIndexOf(File.separatorChar) : -1;
+        this.directory = slash >= 0 ? filePath.substring(0, slash) : null;
+        this.name = slash >= 0 ? filePath.substring(slash + 1) : filePath;
         this.fileUri = fileUri;
-        this.title = title;
-        this.type = getFileType(filePath);
+        // 标题就是文件名时复用同一个字符串
+        this.title = title != null && title.equals(name) ? name : title;
+        this.resourceId = NO_RESOURCE;
+        this.format = (byte) (filePath != null
+                ? MediaFileTypes.formatForName(filePath) : MediaFileTypes.FORMAT_UNKNOWN);
+        this.type = (byte) typeOf(format);
         this.source = SOURCE_SDCARD;
-        this.resourceId = null;
+        this.placeholderColor = 0;
+        this.stableId = computeStableId();
     }
-    
-    // 本地资源构造方法
-    public ImageItem(int resourceId, String title, boolean isPag) {
-        this.resourceId = resourceId;
+
+    // 目录缓存条目构造方法，格式、大小、修改时间和尺寸直接来自缓存
+    public ImageItem(MediaCatalog.Entry entry) {
+        this.directory = entry.directory;
+        this.name = entry.name;
+        this.fileUri = null;
+        this.title = entry.name;
+        this.resourceId = NO_RESOURCE;
+        this.format = (byte) entry.format;
+        this.type = (byte) entry.type;
+        this.source = SOURCE_SDCARD;
+        this.fileSize = entry.size;
+        this.lastModified = entry.lastModified;
+        this.width = entry.width;
+        this.height = entry.height;
+        this.placeholderColor = entry.placeholderColor;
+        this.stableId = computeStableId();
+    }
+
+    // MediaStore条目构造方法，directory由调用方在同一目录的条目间共享，占位颜色来自目录缓存
+    public ImageItem(String directory, String name, Uri fileUri, int format,
+                     long fileSize, long lastModified, int width, int height, int placeholderColor) {
+        this.directory = directory;
+        this.name = name;
+        this.fileUri = fileUri;
+        this.title = name;
+        this.resourceId = NO_RESOURCE;
+        this.format = (byte) format;
+        this.type = (byte) typeOf(format);
+        this.source = SOURCE_SDCARD;
+        this.fileSize = fileSize;
+        this.lastModified = lastModified;
+        this.width = width;
+        this.height = height;
+        this.placeholderColor = placeholderColor;
+        this.stableId = computeStableId();
+    }
+
+    // 本地图片资源构造方法
+    public ImageItem(int resourceId, String title) {
+        this.directory = null;
+        this.name = null;
+        this.fileUri = null;
         this.title = title;
-        this.type = isPag ? TYPE_PAG : TYPE_IMAGE;
+        this.resourceId = resourceId;
+        // 内置图片资源的格式交给Glide判断
+        this.format = (byte) MediaFileTypes.FORMAT_UNKNOWN;
+        this.type = (byte) TYPE_IMAGE;
         this.source = SOURCE_LOCAL;
-        this.filePath = null;
+        this.placeholderColor = 0;
+        this.stableId = resourceId;
+    }
+
+    // 内置assets文件构造方法，通过fromAsset创建
+    private ImageItem(String assetPath, String title, int format) {
+        this.directory = null;
+        this.name = assetPath;
         this.fileUri = null;
+        this.title = title;
+        this.resourceId = NO_RESOURCE;
+        this.format = (byte) format;
+        this.type = (byte) typeOf(format);
+        this.source = SOURCE_LOCAL;
+        this.placeholderColor = 0;
+        this.stableId = computeStableId();
     }
-    
+
+    /**
+     * 内置在assets中的文件（目前是PAG动画）
+     */
+    public static ImageItem fromAsset(String assetPath, String title) {
+        return new ImageItem(assetPath, title, MediaFileTypes.formatForName(assetPath));
+    }
+
     public static int getFileType(String filePath) {
-        if (filePath.toLowerCase().endsWith(".pag")) {
+        if (MediaFileTypes.isPag(filePath)) {
             return TYPE_PAG;
         } else {
             return TYPE_IMAGE;
         }
     }
-    
+
+    private static int typeOf(int format) {
+        return format == MediaFileTypes.FORMAT_PAG ? TYPE_PAG : TYPE_IMAGE;
+    }
+
     // Getters
-    public String getFilePath() { return filePath; }
+    public String getFilePath() {
+        if (isAsset()) return null;
+        if (directory == null) return name;
+        File file = getFile();
+        return file.getPath();
+    }
+    public String getFileName() { return name; }
+    /** 所在目录，资源项为null */
+    public String getDirectory() { return directory; }
     public Uri getFileUri() { return fileUri; }
     public int getType() { return type; }
+    /** 文件头识别出的格式，见MediaFileTypes.FORMAT_*，未知时为FORMAT_UNKNOWN */
+    public int getFormat() { return format; }
     public String getTitle() { return title; }
-    public Integer getResourceId() { return resourceId; }
+    /** 资源ID，不是资源时返回0 */
+    public int getResourceId() { return resourceId; }
     public int getSource() { return source; }
-    public File getFile() { return filePath != null ? new File(filePath) : null; }
+    public long getFileSize() { return fileSize; }
+    public long getLastModified() { return lastModified; }
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
+    /** 全尺寸图片解码完成前显示的颜色，没有时返回0 */
+    public int getPlaceholderColor() { return placeholderColor; }
     public boolean hasUri() { return fileUri != null; }
-    public boolean isResource() { return resourceId != null; }
+    public boolean isResource() { return resourceId != NO_RESOURCE; }
+    public boolean isAsset() { return source == SOURCE_LOCAL && name != null; }
+    /** assets中的路径，不是内置assets文件时返回null */
+    public String getAssetPath() { return isAsset() ? name : null; }
     public boolean isFromSDCard() { return source == SOURCE_SDCARD; }
     public boolean isFromLocal() { return source == SOURCE_LOCAL; }
-    
+
+    /**
+     * 文件项对应的File，第一次调用时创建
+     */
+    public File getFile() {
+        if (name == null) return null;
+        if (file == null) {
+            file = directory != null ? new File(directory, name) : new File(name);
+        }
+        return file;
+    }
+
+    /**
+     * 稳定ID，资源项用资源ID，文件项用路径（或URI）的64位哈希
+     */
+    public long getStableId() {
+        return stableId;
+    }
+
+    private long computeStableId() {
+        return stableIdOf(directory, name, fileUri);
+    }
+
+    /**
+     * 文件项的稳定ID，构造时计算一次；包可见以便基准测试直接测量哈希
+     */
+    static long stableIdOf(String directory, String name, Uri fileUri) {
+        // FNV-1a 64位哈希，直接遍历目录和文件名，不拼接完整路径
+        long hash = 0xcbf29ce484222325L;
+        if (name != null) {
+            if (directory != null) {
+                hash = fnv1a(hash, directory);
+                hash = (hash ^ File.separatorChar) * 0x100000001b3L;
+            }
+            hash = fnv1a(hash, name);
+        } else {
+            hash = fnv1a(hash, String.valueOf(fileUri));
+        }
+        // 置最高位以避免和资源ID冲突
+        return hash | Long.MIN_VALUE;
+    }
+
+    private static long fnv1a(long hash, String key) {
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * 是否指向同一个文件或资源
+     */
+    public boolean isSameItem(ImageItem other) {
+        if (isResource() || other.isResource()) {
+            return resourceId == other.resourceId;
+        }
+        if (name != null || other.name != null) {
+            return name != null && name.equals(other.name)
+                    && (directory == null ? other.directory == null : directory.equals(other.directory));
+        }
+        return fileUri != null && fileUri.equals(other.fileUri);
+    }
+
+    /**
+     * 内容是否相同，文件大小或修改时间变化视为内容变化
+     */
+    public boolean isSameContent(ImageItem other) {
+        return type == other.type
+                && format == other.format
+                && source == other.source
+                && fileSize == other.fileSize
+                && lastModified == other.lastModified
+                && title.equals(other.title);
+    }
+
     /**
-     * 获取用于Glide加载的源
+     * 获取用于Glide加载的源，结果会缓存，重复绑定同一页不再分配
      */
     public Object getGlideSource() {
-        if (isResource()) {
-            return resourceId;
-        } else if (hasUri()) {
-            return fileUri;
-        } else if (filePath != null) {
-            return getFile();
+        if (glideSource == null) {
+            if (isResource()) {
+                glideSource = resourceId;
+            } else if (hasUri()) {
+                glideSource = fileUri;
+            } else if (name != null && !isAsset()) {
+                glideSource = getFile();
+            }
         }
-        return null;
+        return glideSource;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,82 @@
+package com.android.launcher3.wallpaper;
+
+import android.net.Uri;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.bumptech.glide.load.Key;
+import com.bumptech.glide.load.Options;
+import com.bumptech.glide.load.model.ModelLoader;
+import com.bumptech.glide.load.model.ModelLoaderFactory;
+import com.bumptech.glide.load.model.MultiModelLoaderFactory;
+import com.bumptech.glide.signature.ObjectKey;
+import java.io.File;
+
+/**
+ * 直接以ImageItem作为Glide的模型，按文件、Uri或资源交给Glide自带的加载器读取，
+ * 缓存键包含文件大小和修改时间，文件被替换后不会命中旧的缓存
+ */
+public class ImageItemModelLoader<Data> implements ModelLoader<ImageItem, Data> {
+    private final ModelLoader<File, Data> fileLoader;
+    private final ModelLoader<Uri, Data> uriLoader;
+    private final ModelLoader<Integer, Data> resourceLoader;
+
+    ImageItemModelLoader(ModelLoader<File, Data> fileLoader, ModelLoader<Uri, Data> uriLoader,
+            ModelLoader<Integer, Data> resourceLoader) {
+        this.fileLoader = fileLoader;
+        this.uriLoader = uriLoader;
+        this.resourceLoader = resourceLoader;
+    }
+
+    @Nullable
+    @Override
+    public LoadData<Data> buildLoadData(@NonNull ImageItem item, int width, int height,
+            @NonNull Options options) {
+        Object source = item.getGlideSource();
+        LoadData<Data> delegate = null;
+        if (source instanceof File) {
+            delegate = fileLoader.buildLoadData((File) source, width, height, options);
+        } else if (source instanceof Uri) {
+            delegate = uriLoader.buildLoadData((Uri) source, width, height, options);
+        } else if (source instanceof Integer) {
+            delegate = resourceLoader.buildLoadData((Integer) source, width, height, options);
+        }
+        if (delegate == null) {
+            return null;
+        }
+        return new LoadData<>(cacheKey(item), delegate.fetcher);
+    }
+
+    @Override
+    public boolean handles(@NonNull ImageItem item) {
+        return item.getGlideSource() != null;
+    }
+
+    private static Key cacheKey(ImageItem item) {
+        if (item.isResource()) {
+            return new ObjectKey("res:" + item.getResourceId());
+        }
+        Object source = item.hasUri() ? item.getFileUri() : item.getFilePath();
+        return new ObjectKey(source + "@" + item.getFileSize() + "@" + item.getLastModified());
+    }
+
+    public static class Factory<Data> implements ModelLoaderFactory<ImageItem, Data> {
+        private final Class<Data> dataClass;
+
+        public Factory(Class<Data> dataClass) {
+            this.dataClass = dataClass;
+        }
+
+        @NonNull
+        @Override
+        public ModelLoader<ImageItem, Data> build(@NonNull MultiModelLoaderFactory multiFactory) {
+            return new ImageItemModelLoader<>(
+                    multiFactory.build(File.class, dataClass),
+                    multiFactory.build(Uri.class, dataClass),
+                    multiFactory.build(Integer.class, dataClass));
+        }
+
+        @Override
+        public void teardown() {
+        }
+    }
+}
@@ -1,24 +1,96 @@
 package com.android.launcher3.wallpaper;
 
 import android.content.Context;
+import android.graphics.drawable.ColorDrawable;
+import android.graphics.drawable.Drawable;
+import android.view.GestureDetector;
 import android.view.LayoutInflater;
+import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ImageView;
 import android.widget.TextView;
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AdapterListUpdateCallback;
+import androidx.recyclerview.widget.AsyncDifferConfig;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.android.launcher3.R;
+import androidx.annotation.Nullable;
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.bumptech.glide.load.engine.GlideException;
+import com.bumptech.glide.load.resource.drawable.DrawableTransitionOptions;
+import com.bumptech.glide.request.RequestListener;
 import com.bumptech.glide.request.RequestOptions;
+import com.bumptech.glide.request.target.Target;
+import com.bumptech.glide.request.transition.DrawableCrossFadeFactory;
+import org.libpag.PAGFile;
 import org.libpag.PAGView;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 
 public class ImagePagerAdapter extends RecyclerView.Adapter<ImagePagerAdapter.ViewHolder> {
+    // PAG页面的底色，封面和动画首帧出来前显示
+    private static final int PAG_BACKGROUND_COLOR = 0xFF1A1A1A;
+    // 缩略图淡入为全尺寸图片；从内存缓存直接取到时Glide不做过渡
+    private static final DrawableCrossFadeFactory CROSS_FADE_FACTORY =
+            new DrawableCrossFadeFactory.Builder(150).setCrossFadeEnabled(true).build();
+    // 只有选中状态变化时的局部刷新，不重新加载图片或PAG
+    private static final Object PAYLOAD_SELECTION = new Object();
+    private static final int TITLE_BAR_COLOR = 0x80000000;
+    private static final int TITLE_BAR_SELECTED_COLOR = 0xCC1976D2;
+    
+    // 图片页和PAG页使用各自的布局，回收池中互不复用
+    static final int VIEW_TYPE_IMAGE = 0;
+    static final int VIEW_TYPE_PAG = 1;
+    // 回收池中每种页面最多保留的个数：ViewPager2同时只有一到两页可见，
+    // PAG页带原生渲染表面，只保留一个
+    private static final int MAX_RECYCLED_IMAGE_PAGES = 3;
+    private static final int MAX_RECYCLED_PAG_PAGES = 1;
+    
     private Context context;
-    private List<ImageItem> imageList;
+    private final AsyncListDiffer<ImageItem> differ;
+    // 最近一次提交的列表，差异计算完成前getCurrentList()还是旧数据；
+    // 每次提交都是新建的ArrayList，没有差异在计算时就是differ当前持有的列表
+    private ArrayList<ImageItem> latestList;
+    // 提交和已生效的列表代数，不相等说明还有差异在后台计算
+    private int submittedGeneration;
+    private int committedGeneration;
     private OnItemClickListener onItemClickListener;
+    // 按页面实际尺寸计算的解码参数，页面尺寸变化（如旋转）时重新计算
+    private DecodeConfig decodeConfig;
+    private final PagPlaybackManager playbackManager = new PagPlaybackManager(this);
+    // 批量删除时选中的页面（稳定ID）
+    private final Set<Long> selectedIds = new HashSet<>();
+    private final View.OnLayoutChangeListener pageSizeListener =
+            (v, left, top, right, bottom, oldLeft, oldTop, oldRight, oldBottom) ->
+                    updatePageSize(right - left, bottom - top);
+    
+    /**
+     * 同一个文件（或资源）视为同一项，大小、修改时间等不变时视为内容相同，
+     * 内容相同的页面不会重新绑定，已解码的图片和正在播放的PAG动画得以保留
+     */
+    static final DiffUtil.ItemCallback<ImageItem> DIFF_CALLBACK = new DiffUtil.ItemCallback<ImageItem>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull ImageItem oldItem, @NonNull ImageItem newItem) {
+            return oldItem.isSameItem(newItem);
+        }
+        
+        @Override
+        public boolean areContentsTheSame(@NonNull ImageItem oldItem, @NonNull ImageItem newItem) {
+            return oldItem.isSameContent(newItem);
+        }
+    };
     
     public interface OnItemClickListener {
         void onItemClick(int position);
@@ -27,133 +99,534 @@ public class ImagePagerAdapter extends RecyclerView.Adapter<ImagePagerAdapter.Vi
     
     public ImagePagerAdapter(Context context, List<ImageItem> imageList) {
         this.context = context;
-        this.imageList = imageList;
+        this.decodeConfig = DecodeConfig.create(context, 0, 0);
+        // 差异计算在后台线程进行，结果在主线程分发为细粒度的增删改通知
+        this.differ = new AsyncListDiffer<>(new AdapterListUpdateCallback(this),
+                new AsyncDifferConfig.Builder<>(DIFF_CALLBACK).build());
+        setHasStableIds(true);
+        submit(new ArrayList<>(imageList), null);
     }
     
     public void setOnItemClickListener(OnItemClickListener listener) {
         this.onItemClickListener = listener;
     }
     
+    /**
+     * PAG播放管理，需要注册为ViewPager2的翻页回调并跟随Activity生命周期
+     */
+    public PagPlaybackManager getPlaybackManager() {
+        return playbackManager;
+    }
+    
+    
+    /**
+     * 切换某一页的选中状态
+     */
+    public void toggleSelection(int position) {
+        if (position < 0 || position >= getItemCount()) return;
+        long id = getItem(position).getStableId();
+        if (!selectedIds.remove(id)) {
+            selectedIds.add(id);
+        }
+        notifyItemChanged(position, PAYLOAD_SELECTION);
+    }
+    
+    public void clearSelection() {
+        if (selectedIds.isEmpty()) return;
+        selectedIds.clear();
+        notifyItemRangeChanged(0, getItemCount(), PAYLOAD_SELECTION);
+    }
+    
+    public Set<Long> getSelectedIds() {
+        return Collections.unmodifiableSet(selectedIds);
+    }
+    
     public void removeItem(int position) {
-        if (position >= 0 && position < imageList.size()) {
-            imageList.remove(position);
-            notifyItemRemoved(position);
-            
-            if (position < imageList.size()) {
-                notifyItemRangeChanged(position, imageList.size() - position);
-            }
+        if (position >= 0 && position < latestList.size()) {
+            ArrayList<ImageItem> newList = new ArrayList<>(latestList);
+            newList.remove(position);
+            submit(newList, null);
         }
     }
     
     @NonNull
     @Override
     public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
-        View view = LayoutInflater.from(parent.getContext())
-                .inflate(R.layout.item_image_pager, parent, false);
-        return new ViewHolder(view);
+        LayoutInflater inflater = LayoutInflater.from(parent.getContext());
+        if (viewType == VIEW_TYPE_PAG) {
+            return new PagViewHolder(inflater.inflate(R.layout.item_pag_page, parent, false));
+        }
+        return new ImageViewHolder(inflater.inflate(R.layout.item_image_page, parent, false));
     }
+    
+    @Override
+    public int getItemViewType(int position) {
+        return getItem(position).getType() == ImageItem.TYPE_PAG ? VIEW_TYPE_PAG : VIEW_TYPE_IMAGE;
+    }
+    
     /**
-     * 更新数据的方法
+     * 更新数据的方法，差异在后台计算完成后才生效
      */
     public void updateData(List<ImageItem> newImageList) {
-        this.imageList = newImageList;
-        notifyDataSetChanged();
+        updateData(newImageList, null);
+    }
+    
+    /**
+     * 更新数据，commitCallback在新列表生效后在主线程回调
+     */
+    public void updateData(List<ImageItem> newImageList, Runnable commitCallback) {
+        submit(new ArrayList<>(newImageList), commitCallback);
+    }
+
+    /**
+     * 追加一批数据，只通知新增的范围
+     * 没有差异在计算时直接追加到当前列表，不复制列表也不做差异计算
+     */
+    public void appendItems(List<ImageItem> items) {
+        if (items == null || items.isEmpty()) return;
+
+        if (committedGeneration == submittedGeneration) {
+            int start = latestList.size();
+            latestList.addAll(items);
+            notifyItemRangeInserted(start, items.size());
+            return;
+        }
+
+        // 前一次提交还没生效，只能基于它再提交一次
+        ArrayList<ImageItem> newList = new ArrayList<>(latestList.size() + items.size());
+        newList.addAll(latestList);
+        newList.addAll(items);
+        submit(newList, null);
+    }
+    
+    private void submit(ArrayList<ImageItem> newList, Runnable commitCallback) {
+        latestList = newList;
+        final int generation = ++submittedGeneration;
+        // 被更新的提交取代时回调不会执行，由最后一次提交的回调更新代数
+        differ.submitList(newList, () -> {
+            committedGeneration = generation;
+            if (commitCallback != null) {
+                commitCallback.run();
+            }
+        });
     }
+    
+    /**
+     * 当前已生效的数据，不可修改
+     */
+    public List<ImageItem> getCurrentList() {
+        return differ.getCurrentList();
+    }
+    
+    public ImageItem getItem(int position) {
+        return differ.getCurrentList().get(position);
+    }
+    
+    /**
+     * 根据稳定ID查找位置，找不到返回-1
+     */
+    public int findPositionById(long id) {
+        List<ImageItem> current = differ.getCurrentList();
+        for (int i = 0; i < current.size(); i++) {
+            if (current.get(i).getStableId() == id) {
+                return i;
+            }
+        }
+        return RecyclerView.NO_POSITION;
+    }
+    
     @Override
     public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
-        ImageItem item = imageList.get(position);
+        long start = PerfMetrics.now();
+        ImageItem item = getItem(position);
         holder.bind(item, position);
+        PerfMetrics.get().recordSince(PerfMetrics.BIND, start);
+    }
+    
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (!payloads.isEmpty() && payloads.stream().allMatch(payload -> payload == PAYLOAD_SELECTION)) {
+            holder.bindSelection(getItem(position));
+            return;
+        }
+        super.onBindViewHolder(holder, position, payloads);
+    }
+    
+    @Override
+    public long getItemId(int position) {
+        return getItem(position).getStableId();
     }
     
     @Override
     public int getItemCount() {
-        return imageList.size();
+        return differ.getCurrentList().size();
     }
     
-    public class ViewHolder extends RecyclerView.ViewHolder {
-        ImageView imageView;
+    @Override
+    public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onAttachedToRecyclerView(recyclerView);
+        // ViewPager2的页面是match_parent，内部RecyclerView的尺寸即页面尺寸
+        recyclerView.addOnLayoutChangeListener(pageSizeListener);
+        updatePageSize(recyclerView.getWidth(), recyclerView.getHeight());
+        RecyclerView.RecycledViewPool pool = recyclerView.getRecycledViewPool();
+        pool.setMaxRecycledViews(VIEW_TYPE_IMAGE, MAX_RECYCLED_IMAGE_PAGES);
+        pool.setMaxRecycledViews(VIEW_TYPE_PAG, MAX_RECYCLED_PAG_PAGES);
+    }
+    
+    @Override
+    public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+        recyclerView.removeOnLayoutChangeListener(pageSizeListener);
+        playbackManager.releaseAll();
+        super.onDetachedFromRecyclerView(recyclerView);
+    }
+    
+    private void updatePageSize(int width, int height) {
+        if (width <= 0 || height <= 0 || decodeConfig.matches(width, height)) {
+            return;
+        }
+        decodeConfig = DecodeConfig.create(context, width, height);
+    }
+    
+    public DecodeConfig getDecodeConfig() {
+        return decodeConfig;
+    }
+    
+    /**
+     * 两种页面共用的部分：标题栏、选中状态和点击手势
+     */
+    public abstract class ViewHolder extends RecyclerView.ViewHolder {
+        View titleBar;
         TextView tvTitle;
         TextView tvType;
         TextView tvSource;
-        View pagContainer;
-        PAGView pagView;
+        // 图片页显示图片，PAG页在首帧出来前显示封面
+        ImageView imageView;
+        long boundItemId = RecyclerView.NO_ID;
+        ImageItem boundItem;
         
-        public ViewHolder(@NonNull View itemView) {
+        ViewHolder(@NonNull View itemView) {
             super(itemView);
-            imageView = itemView.findViewById(R.id.imageView);
+            titleBar = itemView.findViewById(R.id.titleBar);
             tvTitle = itemView.findViewById(R.id.tvTitle);
             tvType = itemView.findViewById(R.id.tvType);
             tvSource = itemView.findViewById(R.id.tvSource);
-            pagContainer = itemView.findViewById(R.id.pagContainer);
-            pagView = itemView.findViewById(R.id.pagView);
+            imageView = itemView.findViewById(R.id.imageView);
+            setupGestures(itemView.findViewById(R.id.pageContent));
+        }
+        
+        private void setupGestures(View content) {
+            GestureDetector detector = new GestureDetector(itemView.getContext(),
+                    new GestureDetector.SimpleOnGestureListener() {
+                        @Override
+                        public boolean onDown(MotionEvent e) {
+                            return true;
+                        }
+                        
+                        @Override
+                        public boolean onSingleTapConfirmed(MotionEvent e) {
+                            dispatchClick();
+                            return true;
+                        }
+                        
+                        @Override
+                        public void onLongPress(MotionEvent e) {
+                            int position = getBindingAdapterPosition();
+                            if (onItemClickListener != null && position != RecyclerView.NO_POSITION) {
+                                onItemClickListener.onItemLongClick(position);
+                            }
+                        }
+                        
+                        @Override
+                        public boolean onDoubleTap(MotionEvent e) {
+                            if (boundItem != null) {
+                                onDoubleTapItem(boundItem);
+                            }
+                            return true;
+                        }
+                    });
+            // 内容区的子视图都不消费触摸事件，手势统一在容器上识别
+            content.setOnTouchListener((v, event) -> detector.onTouchEvent(event));
+        }
+        
+        void dispatchClick() {
+            int position = getBindingAdapterPosition();
+            if (onItemClickListener != null && position != RecyclerView.NO_POSITION) {
+                onItemClickListener.onItemClick(position);
+            }
         }
         
         public void bind(ImageItem item, int position) {
+            boundItemId = item.getStableId();
+            boundItem = item;
             tvTitle.setText(item.getTitle());
             tvSource.setText(item.isFromSDCard() ? "SDCard" : "本地");
-            
-            if (item.getType() == ImageItem.TYPE_PAG) {
-                bindPagItem(item);
-            } else {
-                bindImageItem(item);
-            }
+            bindSelection(item);
+            bindContent(item);
+        }
+        
+        void bindSelection(ImageItem item) {
+            titleBar.setBackgroundColor(selectedIds.contains(item.getStableId())
+                    ? TITLE_BAR_SELECTED_COLOR : TITLE_BAR_COLOR);
+        }
+        
+        abstract void bindContent(ImageItem item);
+        
+        void onDoubleTapItem(ImageItem item) {
+        }
+        
+        /**
+         * 页面被回收时释放占用的资源
+         */
+        void onRecycled() {
+            boundItem = null;
+            boundItemId = RecyclerView.NO_ID;
+        }
+    }
+    
+    /**
+     * 静态图片页，只有ImageView和按需显示的大图缩放视图
+     */
+    public class ImageViewHolder extends ViewHolder {
+        TiledImageView tiledImageView;
+        
+        ImageViewHolder(@NonNull View itemView) {
+            super(itemView);
+            tiledImageView = itemView.findViewById(R.id.tiledImageView);
+            tiledImageView.setOnTapListener(new TiledImageView.OnTapListener() {
+                @Override
+                public void onSingleTap() {
+                    dispatchClick();
+                }
+                
+                @Override
+                public void onExitRequested() {
+                    exitZoom();
+                }
+            });
+        }
+        
+        @Override
+        void bindContent(ImageItem item) {
+            releaseZoom();
+            bindImage(item);
         }
         
-        private void bindImageItem(ImageItem item) {
+        private void bindImage(ImageItem item) {
             tvType.setText("图片");
-            pagContainer.setVisibility(View.GONE);
             imageView.setVisibility(View.VISIBLE);
             
-            if (pagView != null) {
-                pagView.stop();
-                pagView.freeCache();
-            }
-            
-            RequestOptions options = new RequestOptions()
-                    .override(1080, 1920)
-                    .centerInside();
+            RequestOptions options = decodeConfig.optionsFor(item);
             
-            Object glideSource = item.getGlideSource();
-            if (glideSource != null) {
-                Glide.with(context)
-                        .load(glideSource)
-                        .apply(options)
+            if (item.getGlideSource() != null) {
+                // ImageItem本身作为模型，缓存键包含修改时间；
+                // 先显示扫描时算出的平均颜色，全尺寸图片解码完成后淡入替换
+                int placeholderColor = item.getPlaceholderColor();
+                RequestBuilder<Drawable> request = Glide.with(context).load(item).apply(options);
+                if (placeholderColor != 0) {
+                    request = request.placeholder(new ColorDrawable(placeholderColor));
+                }
+                request.transition(DrawableTransitionOptions.withCrossFade(CROSS_FADE_FACTORY))
+                        .listener(new MetricsListener(PerfMetrics.now()))
                         .into(imageView);
             }
         }
         
-        private void bindPagItem(ImageItem item) {
-            tvType.setText("PAG动画");
-            pagContainer.setVisibility(View.VISIBLE);
+        @Override
+        void onDoubleTapItem(ImageItem item) {
+            if (isZoomable(item)) {
+                enterZoom(item);
+            }
+        }
+        
+        /**
+         * 只有比页面大得多的静态图片文件才需要分块缩放，尺寸未知时允许尝试
+         */
+        private boolean isZoomable(ImageItem item) {
+            if (item.isResource() || item.getGlideSource() == null) return false;
+            int format = item.getFormat();
+            if (format != MediaFileTypes.FORMAT_PNG && format != MediaFileTypes.FORMAT_JPEG
+                    && format != MediaFileTypes.FORMAT_WEBP && format != MediaFileTypes.FORMAT_HEIF) {
+                return false;
+            }
+            long pixels = (long) item.getWidth() * item.getHeight();
+            long pagePixels = (long) decodeConfig.getTargetWidth() * decodeConfig.getTargetHeight();
+            return pixels == 0 || pixels > pagePixels * 2;
+        }
+        
+        private void enterZoom(ImageItem item) {
+            // 缩放模式自己解码底图和分块，先释放Glide加载的整图
+            tiledImageView.setVisibility(View.VISIBLE);
+            tiledImageView.setImage(context.getContentResolver(), item.getGlideSource(),
+                    item.getFormat() == MediaFileTypes.FORMAT_JPEG
+                            || item.getFormat() == MediaFileTypes.FORMAT_HEIF);
+            Glide.with(context).clear(imageView);
             imageView.setVisibility(View.GONE);
+        }
+        
+        private void exitZoom() {
+            if (tiledImageView.getVisibility() != View.VISIBLE) return;
+            tiledImageView.recycle();
+            tiledImageView.setVisibility(View.GONE);
+            if (boundItem != null) {
+                bindImage(boundItem);
+            }
+        }
+        
+        /**
+         * 释放缩放模式的解码器和分块，重新绑定或回收时调用
+         */
+        void releaseZoom() {
+            if (tiledImageView.getVisibility() == View.VISIBLE) {
+                tiledImageView.recycle();
+                tiledImageView.setVisibility(View.GONE);
+            }
+        }
+        
+        @Override
+        void onRecycled() {
+            super.onRecycled();
+            releaseZoom();
+        }
+    }
+    
+    /**
+     * PAG动画页，PAGView在第一次绑定时才创建，封面叠在它上方直到首帧渲染出来
+     */
+    public class PagViewHolder extends ViewHolder {
+        ViewGroup pagContainer;
+        PAGView pagView;
+        // 当前绑定的PAG是否已渲染出首帧，出来后隐藏封面
+        boolean pagFrameReady;
+        long pagBindStartNanos;
+        
+        PagViewHolder(@NonNull View itemView) {
+            super(itemView);
+            pagContainer = itemView.findViewById(R.id.pagContainer);
+            imageView.setBackgroundColor(PAG_BACKGROUND_COLOR);
+        }
+        
+        @Override
+        void bindContent(ImageItem item) {
+            long itemId = item.getStableId();
+            tvType.setText("PAG动画");
+            
+            // 先显示封面，PAG首帧渲染出来后再隐藏
+            pagFrameReady = false;
+            pagBindStartNanos = PerfMetrics.now();
+            showPoster(item, itemId);
             
             // 加载PAG动画
-            loadPagAnimation(item);
+            loadPagAnimation(item, itemId);
         }
         
-        private void loadPagAnimation(ImageItem item) {
+        /**
+         * 创建PAGView（原生渲染表面）并加到容器中，同一个页面只创建一次
+         */
+        private PAGView ensurePagView() {
             if (pagView == null) {
-                return;
+                pagView = new PAGView(itemView.getContext());
+                pagContainer.addView(pagView, new ViewGroup.LayoutParams(
+                        ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+                pagView.addListener(new PAGView.PAGViewListener() {
+                    @Override
+                    public void onAnimationStart(PAGView view) {
+                    }
+                    
+                    @Override
+                    public void onAnimationEnd(PAGView view) {
+                    }
+                    
+                    @Override
+                    public void onAnimationCancel(PAGView view) {
+                    }
+                    
+                    @Override
+                    public void onAnimationRepeat(PAGView view) {
+                        // 幻灯片在选中页播放完一个周期后翻页
+                        playbackManager.onAnimationRepeat(view);
+                    }
+                    
+                    @Override
+                    public void onAnimationUpdate(PAGView view) {
+                    }
+                });
+                pagView.addPAGFlushListener(view -> {
+                    if (!pagFrameReady) {
+                        pagFrameReady = true;
+                        PerfMetrics.get().recordSince(PerfMetrics.PAG_FIRST_FRAME, pagBindStartNanos);
+                        final long frameItemId = boundItemId;
+                        itemView.post(() -> hidePoster(frameItemId));
+                    }
+                });
             }
+            return pagView;
+        }
+        
+        private void showPoster(ImageItem item, long itemId) {
+            imageView.setVisibility(View.VISIBLE);
+            Glide.with(context).clear(imageView);
             
+            PagPosterCache.Callback callback = posterFile -> {
+                if (posterFile != null && boundItemId == itemId && !pagFrameReady) {
+                    loadPoster(posterFile);
+                }
+            };
+            // 封面按页面一半的尺寸渲染，只用于首帧出来前的过渡；
+            // 本进程中已知的封面直接回调，否则在后台查找或生成，主线程不访问磁盘
+            int maxWidth = decodeConfig.getTargetWidth() / 2;
+            int maxHeight = decodeConfig.getTargetHeight() / 2;
+            PagPosterCache posterCache = PagPosterCache.getInstance(context);
+            if (item.isAsset()) {
+                posterCache.requestAssetPoster(context.getAssets(), item.getAssetPath(), 0,
+                        maxWidth, maxHeight, callback);
+            } else if (item.isFromSDCard() && item.getFilePath() != null) {
+                posterCache.requestPoster(item.getFilePath(), item.getLastModified(), 0,
+                        maxWidth, maxHeight, callback);
+            }
+        }
+        
+        private void loadPoster(File posterFile) {
+            Glide.with(context)
+                    .load(posterFile)
+                    .override(decodeConfig.getTargetWidth(), decodeConfig.getTargetHeight())
+                    .centerInside()
+                    // 封面本身就是缓存文件，不再写入Glide磁盘缓存
+                    .diskCacheStrategy(DiskCacheStrategy.NONE)
+                    .into(imageView);
+        }
+        
+        /**
+         * 首帧渲染出来后隐藏封面，期间页面已经换绑其它条目时不处理
+         */
+        private void hidePoster(long itemId) {
+            if (boundItemId == RecyclerView.NO_ID || boundItemId != itemId) {
+                return;
+            }
+            Glide.with(context).clear(imageView);
+            imageView.setVisibility(View.GONE);
+        }
+        
+        private void loadPagAnimation(ImageItem item, long itemId) {
             try {
-                String filePath = null;
+                PAGFile pagFile = null;
                 
-                if (item.isFromSDCard()) {
-                    // SDCard的PAG文件
-                    filePath = item.getFilePath();
-                } else if (item.isFromLocal()) {
-                    // 本地资源的PAG文件（需要从assets或raw读取）
-                    // 这里需要根据您的资源存放位置调整
-                    filePath = "assets://" + item.getTitle(); // 示例，实际需要具体实现
+                if (item.isFromSDCard() && item.getFilePath() != null) {
+                    // 从共享缓存取已解析的PAG文件，重新绑定时无需再读取和解析
+                    pagFile = PagFileCache.getInstance().obtain(item.getFilePath(), item.getLastModified());
+                } else if (item.isAsset()) {
+                    // 内置PAG（assets），由libpag直接读取APK中的数据并缓存解析结果
+                    pagFile = PagFileCache.getInstance().obtainAsset(context.getAssets(), item.getAssetPath());
                 }
                 
-                if (filePath != null) {
-                    // 设置PAG文件并播放
-                    pagView.setPath(filePath);
-                    pagView.setRepeatCount(-1); // 无限循环
-                    pagView.play();
+                if (pagFile == null) {
+                    tvType.setText("PAG加载失败");
+                    return;
                 }
+                PAGView view = ensurePagView();
+                view.setComposition(pagFile);
+                view.setRepeatCount(-1); // 无限循环
+                // 只有选中页才会播放，其余停在当前帧
+                playbackManager.attach(view, itemId);
             } catch (Exception e) {
                 e.printStackTrace();
                 tvType.setText("PAG加载失败");
@@ -162,21 +635,63 @@ public class ImagePagerAdapter extends RecyclerView.Adapter<ImagePagerAdapter.Vi
         
         public void releasePag() {
             if (pagView != null) {
-                pagView.stop();
-                pagView.freeCache();
+                playbackManager.detach(pagView);
             }
         }
         
         @Override
-        protected void finalize() throws Throwable {
+        void onRecycled() {
+            super.onRecycled();
             releasePag();
-            super.finalize();
+        }
+    }
+    
+    /**
+     * 记录Glide加载耗时和数据来源（内存缓存、磁盘缓存或原始文件）
+     */
+    private static class MetricsListener implements RequestListener<Drawable> {
+        // 指标名按DataSource.ordinal()预先拼好，每次加载完成时不再分配字符串
+        private static final String[] LOAD_KEYS;
+        private static final String[] SOURCE_KEYS;
+        
+        static {
+            DataSource[] sources = DataSource.values();
+            LOAD_KEYS = new String[sources.length];
+            SOURCE_KEYS = new String[sources.length];
+            for (DataSource source : sources) {
+                String name = source.name().toLowerCase(Locale.ROOT);
+                LOAD_KEYS[source.ordinal()] = PerfMetrics.GLIDE_LOAD + "." + name;
+                SOURCE_KEYS[source.ordinal()] = PerfMetrics.GLIDE_SOURCE_PREFIX + name;
+            }
+        }
+        
+        private final long startNanos;
+        
+        MetricsListener(long startNanos) {
+            this.startNanos = startNanos;
+        }
+        
+        @Override
+        public boolean onLoadFailed(@Nullable GlideException e, Object model,
+                                    @NonNull Target<Drawable> target, boolean isFirstResource) {
+            PerfMetrics.get().increment(PerfMetrics.GLIDE_FAILED);
+            return false;
+        }
+        
+        @Override
+        public boolean onResourceReady(@NonNull Drawable resource, @NonNull Object model,
+                                       Target<Drawable> target, @NonNull DataSource dataSource,
+                                       boolean isFirstResource) {
+            PerfMetrics metrics = PerfMetrics.get();
+            metrics.recordSince(LOAD_KEYS[dataSource.ordinal()], startNanos);
+            metrics.increment(SOURCE_KEYS[dataSource.ordinal()]);
+            return false;
         }
     }
     
     @Override
     public void onViewRecycled(@NonNull ViewHolder holder) {
         super.onViewRecycled(holder);
-        holder.releasePag();
+        holder.onRecycled();
     }
 }
\ No newline at end of file
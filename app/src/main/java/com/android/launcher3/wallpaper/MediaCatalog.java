@@ -0,0 +1,474 @@
+package com.android.launcher3.wallpaper;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 持久化的媒体目录缓存
+ * 记录每个目录的修改时间和其中文件的大小、修改时间、类型、尺寸和占位颜色，
+ * 目录修改时间没变时直接复用缓存，变了才重新列目录，且只重新探测有变化的文件；
+ * 不同目录可以在多个线程上同时刷新。扫描只读取文件属性、文件头和尺寸，
+ * 占位颜色在扫描完成后由fillPlaceholderColors补上
+ */
+public class MediaCatalog {
+    private static final String TAG = "MediaCatalog";
+
+    private static final String FILE_NAME = "media_catalog.bin";
+    private static final int MAGIC = 0x4C57434C; // "LWCL"
+    private static final int VERSION = 5;
+    // 计算占位颜色时解码的最大边长
+    private static final int PLACEHOLDER_SAMPLE_EDGE = 32;
+
+    /**
+     * 目录中的一个文件，同一目录的条目共享同一个目录字符串
+     */
+    public static class Entry {
+        public final String directory;
+        public final String name;
+        public final long size;
+        public final long lastModified;
+        public final int type;
+        public final int format;
+        public final int width;
+        public final int height;
+        /** 图片的平均颜色，全尺寸图片解码完成前显示，还没计算时为0 */
+        public final int placeholderColor;
+
+        Entry(String directory, String name, long size, long lastModified, int format,
+                int width, int height, int placeholderColor) {
+            this.directory = directory;
+            this.name = name;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.format = format;
+            this.type = format == MediaFileTypes.FORMAT_PAG ? ImageItem.TYPE_PAG : ImageItem.TYPE_IMAGE;
+            this.width = width;
+            this.height = height;
+            this.placeholderColor = placeholderColor;
+        }
+
+        public String getPath() {
+            return directory + File.separator + name;
+        }
+
+        boolean needsPlaceholderColor() {
+            return placeholderColor == 0 && format != MediaFileTypes.FORMAT_PAG && width > 0 && height > 0;
+        }
+
+        Entry withPlaceholderColor(int color) {
+            return new Entry(directory, name, size, lastModified, format, width, height, color);
+        }
+    }
+
+    /**
+     * 一个目录的内容：支持的文件和子目录（规范路径），都按名称排序
+     */
+    public static class Listing {
+        static final Listing EMPTY = new Listing(null, 0L,
+                Collections.<Entry>emptyList(), Collections.<String>emptyList());
+
+        final String path;
+        final long lastModified;
+        public final List<Entry> entries;
+        public final List<String> subdirectories;
+
+        Listing(String path, long lastModified, List<Entry> entries, List<String> subdirectories) {
+            this.path = path;
+            this.lastModified = lastModified;
+            this.entries = entries;
+            this.subdirectories = subdirectories;
+        }
+    }
+
+    private final File storeFile;
+    private final Map<String, Listing> directories = new ConcurrentHashMap<>();
+    private boolean loaded;
+    private volatile boolean dirty;
+    // 只有占位颜色变化，写回时不改变版本号，进程恢复时仍可按缓存展开
+    private volatile boolean placeholdersDirty;
+    // 每次写回磁盘加一，和保存的值相同说明缓存内容没有变过
+    private volatile long generation;
+
+    public MediaCatalog(Context context) {
+        this.storeFile = new File(context.getFilesDir(), FILE_NAME);
+    }
+
+    /**
+     * 从磁盘读取缓存，只读一次，必须在后台线程调用
+     */
+    public synchronized void load() {
+        if (loaded) return;
+        loaded = true;
+
+        if (!storeFile.exists()) {
+            return;
+        }
+
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(storeFile), 64 * 1024))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                Log.w(TAG, "缓存版本不匹配，忽略: " + storeFile);
+                return;
+            }
+            generation = in.readLong();
+
+            int directoryCount = in.readInt();
+            for (int i = 0; i < directoryCount; i++) {
+                String directoryPath = in.readUTF();
+                long directoryModified = in.readLong();
+                int entryCount = in.readInt();
+                List<Entry> entries = new ArrayList<>(entryCount);
+                for (int j = 0; j < entryCount; j++) {
+                    String name = in.readUTF();
+                    entries.add(new Entry(directoryPath, name, in.readLong(), in.readLong(),
+                            in.readByte(), in.readInt(), in.readInt(), in.readInt()));
+                }
+                int subdirectoryCount = in.readInt();
+                List<String> subdirectories = new ArrayList<>(subdirectoryCount);
+                String prefix = directoryPath + File.separator;
+                for (int j = 0; j < subdirectoryCount; j++) {
+                    subdirectories.add(prefix + in.readUTF());
+                }
+                directories.put(directoryPath,
+                        new Listing(directoryPath, directoryModified, entries, subdirectories));
+            }
+            Log.d(TAG, "读取缓存完成，目录: " + directories.size());
+        } catch (IOException e) {
+            Log.e(TAG, "读取缓存失败: " + e.getMessage());
+            directories.clear();
+            generation = 0L;
+        }
+    }
+
+    /**
+     * 有变化时写回磁盘，先写临时文件再替换，避免写一半的缓存
+     */
+    public synchronized void saveIfDirty() {
+        if (!dirty && !placeholdersDirty) return;
+
+        // 先清除标记，写入期间其它线程的修改会在下一次保存时写回
+        boolean contentChanged = dirty;
+        dirty = false;
+        placeholdersDirty = false;
+        long newGeneration = contentChanged ? generation + 1 : generation;
+        File tmpFile = new File(storeFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmpFile), 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(newGeneration);
+            out.writeInt(directories.size());
+            for (Listing record : directories.values()) {
+                out.writeUTF(record.path);
+                out.writeLong(record.lastModified);
+                out.writeInt(record.entries.size());
+                for (Entry entry : record.entries) {
+                    out.writeUTF(entry.name);
+                    out.writeLong(entry.size);
+                    out.writeLong(entry.lastModified);
+                    out.writeByte(entry.format);
+                    out.writeInt(entry.width);
+                    out.writeInt(entry.height);
+                    out.writeInt(entry.placeholderColor);
+                }
+                out.writeInt(record.subdirectories.size());
+                for (String subdirectory : record.subdirectories) {
+                    out.writeUTF(subdirectory.substring(record.path.length() + 1));
+                }
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "写入缓存失败: " + e.getMessage());
+            tmpFile.delete();
+            if (contentChanged) dirty = true;
+            placeholdersDirty = true;
+            return;
+        }
+
+        if (!tmpFile.renameTo(storeFile)) {
+            Log.e(TAG, "替换缓存文件失败: " + storeFile);
+            tmpFile.delete();
+            if (contentChanged) dirty = true;
+            placeholdersDirty = true;
+            return;
+        }
+        generation = newGeneration;
+    }
+
+    /**
+     * 磁盘上缓存的版本号，load之后有效；内容有变化并写回后会增加
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * 只读取缓存中的目录内容，不访问文件系统；没有缓存时返回空内容
+     */
+    public Listing getCachedListing(String directoryPath) {
+        Listing record = directories.get(directoryPath);
+        return record != null ? record : Listing.EMPTY;
+    }
+
+    /**
+     * 缓存中同一文件的占位颜色，大小或修改时间不一致时视为不同内容，不访问文件系统
+     * @param lastModified 毫秒，只比较到秒（MediaStore只记录到秒）
+     * @return 没有时返回0
+     */
+    public int getCachedPlaceholderColor(String directoryPath, String name, long size, long lastModified) {
+        Listing record = directories.get(directoryPath);
+        if (record == null) return 0;
+
+        // 条目按名称排序
+        int low = 0;
+        int high = record.entries.size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            Entry entry = record.entries.get(middle);
+            int order = entry.name.compareTo(name);
+            if (order < 0) {
+                low = middle + 1;
+            } else if (order > 0) {
+                high = middle - 1;
+            } else {
+                return entry.size == size && entry.lastModified / 1000L == lastModified / 1000L
+                        ? entry.placeholderColor : 0;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 刷新一个目录并返回其中的文件和子目录，每个条目只读一次文件属性
+     * @param directoryPath 规范路径，调用方负责去重；同一目录不能在多个线程上同时刷新
+     */
+    public Listing refreshDirectory(String directoryPath) {
+        File directory = new File(directoryPath);
+        long directoryModified = directory.lastModified();
+        Listing record = directories.get(directoryPath);
+
+        if (directoryModified == 0L || !directory.isDirectory()) {
+            Log.e(TAG, "目录不存在或不是目录: " + directoryPath);
+            if (record != null) {
+                removeDirectory(directoryPath);
+            }
+            return Listing.EMPTY;
+        }
+
+        if (record != null && record.lastModified == directoryModified) {
+            Log.d(TAG, "目录未变化，使用缓存: " + directoryPath + ", 文件: " + record.entries.size());
+            return record;
+        }
+
+        String[] names = directory.list();
+        if (names == null) {
+            Log.e(TAG, "无法读取目录内容: " + directoryPath);
+            return record != null ? record : Listing.EMPTY;
+        }
+        // 排序保证每次重新列出的顺序一致，页面差异只反映真实的增删
+        Arrays.sort(names);
+
+        Map<String, Entry> previous = new HashMap<>();
+        if (record != null) {
+            for (Entry entry : record.entries) {
+                previous.put(entry.name, entry);
+            }
+        }
+
+        List<Entry> entries = new ArrayList<>(names.length);
+        List<String> subdirectories = new ArrayList<>();
+        int probed = 0;
+        for (String name : names) {
+            File file = new File(directory, name);
+            BasicFileAttributes attributes = readAttributes(file);
+            if (attributes == null) continue;
+
+            if (attributes.isDirectory()) {
+                // 不跟随符号链接进入目录，避免循环
+                subdirectories.add(file.getPath());
+                continue;
+            }
+            if (!MediaFileTypes.isSupportedName(name)) continue;
+
+            Entry cached = previous.get(name);
+            Entry entry = refreshEntry(directoryPath, name, file, attributes, cached);
+            if (entry == null) continue;
+            if (entry != cached) probed++;
+            entries.add(entry);
+        }
+
+        if (record != null) {
+            // 已删除的子目录连同其下的缓存一起移除
+            for (String subdirectory : record.subdirectories) {
+                if (!subdirectories.contains(subdirectory)) {
+                    removeDirectory(subdirectory);
+                }
+            }
+        }
+        Listing listing = new Listing(directoryPath, directoryModified, entries, subdirectories);
+        directories.put(directoryPath, listing);
+        dirty = true;
+        Log.d(TAG, "目录已变化，重新列出: " + directoryPath + ", 文件: " + entries.size()
+                + ", 子目录: " + subdirectories.size() + ", 重新探测: " + probed);
+        return listing;
+    }
+
+    /**
+     * 为还没有占位颜色的图片按很小的采样解码算出颜色，写回缓存；
+     * 在扫描完成后低优先级执行，下一次扫描或恢复时条目就带上颜色
+     * @param directoryPaths 规范路径
+     * @return 计算过的文件数
+     */
+    public int fillPlaceholderColors(Collection<String> directoryPaths, BooleanSupplier cancelled) {
+        int filled = 0;
+        for (String directoryPath : directoryPaths) {
+            Listing record = directories.get(directoryPath);
+            if (record == null) continue;
+
+            List<Entry> entries = null;
+            for (int i = 0; i < record.entries.size() && !cancelled.getAsBoolean(); i++) {
+                Entry entry = record.entries.get(i);
+                if (!entry.needsPlaceholderColor()) continue;
+                if (entries == null) {
+                    // 列表可能正被其它线程读取，复制后整体替换
+                    entries = new ArrayList<>(record.entries);
+                }
+                entries.set(i, entry.withPlaceholderColor(
+                        placeholderColorOf(entry.getPath(), entry.width, entry.height)));
+                filled++;
+            }
+            // 期间目录被重新列出时放弃这一批，下次再算
+            if (entries != null && directories.replace(directoryPath, record,
+                    new Listing(directoryPath, record.lastModified, entries, record.subdirectories))) {
+                placeholdersDirty = true;
+            }
+            if (cancelled.getAsBoolean()) break;
+        }
+        return filled;
+    }
+
+    /**
+     * 标记目录需要重新列出，用于目录修改时间不变但文件内容被改写的情况
+     */
+    public void invalidateDirectory(String directoryPath) {
+        Listing record = directories.get(directoryPath);
+        if (record != null && record.lastModified != -1L) {
+            directories.put(directoryPath,
+                    new Listing(directoryPath, -1L, record.entries, record.subdirectories));
+            dirty = true;
+        }
+    }
+
+    private void removeDirectory(String directoryPath) {
+        directories.remove(directoryPath);
+        String prefix = directoryPath + File.separator;
+        directories.keySet().removeIf(path -> path.startsWith(prefix));
+        dirty = true;
+    }
+
+    private static BasicFileAttributes readAttributes(File file) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file.toPath(),
+                    BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            if (attributes.isSymbolicLink()) {
+                // 指向文件的链接按目标文件处理，指向目录的链接不进入
+                attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+                return attributes.isDirectory() ? null : attributes;
+            }
+            return attributes;
+        } catch (IOException | SecurityException e) {
+            Log.w(TAG, "文件不可访问: " + file.getPath());
+            return null;
+        }
+    }
+
+    private Entry refreshEntry(String directoryPath, String name, File file,
+            BasicFileAttributes attributes, Entry previous) {
+        String path = file.getPath();
+        if (!attributes.isRegularFile()) return null;
+
+        long size = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        if (previous != null && previous.size == size && previous.lastModified == lastModified) {
+            return previous;
+        }
+
+        // 新文件或内容变化的文件读取文件头确定真实格式，扩展名不可信
+        int format = sniffFormat(file);
+        if (format == MediaFileTypes.FORMAT_UNKNOWN) {
+            Log.w(TAG, "无法识别的文件格式: " + path);
+            return null;
+        }
+
+        int width = 0;
+        int height = 0;
+        if (format != MediaFileTypes.FORMAT_PAG) {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeFile(path, options);
+            width = Math.max(options.outWidth, 0);
+            height = Math.max(options.outHeight, 0);
+        }
+        // 占位颜色需要解码像素，不在扫描中计算
+        return new Entry(directoryPath, name, size, lastModified, format, width, height, 0);
+    }
+
+    /**
+     * 按很大的采样率解码并缩成一个像素，得到图片的平均颜色；每个文件的每个版本只计算一次，
+     * 之后翻到该页时直接作为占位，不用再从原图解码缩略图
+     * @return 解码失败返回0
+     */
+    private static int placeholderColorOf(String path, int width, int height) {
+        if (width <= 0 || height <= 0) return 0;
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = Integer.highestOneBit(Math.max(Math.max(width, height) / PLACEHOLDER_SAMPLE_EDGE, 1));
+        Bitmap sample = BitmapFactory.decodeFile(path, options);
+        if (sample == null) return 0;
+        Bitmap pixel = Bitmap.createScaledBitmap(sample, 1, 1, true);
+        // 不透明，和0（未知）区分开
+        int color = pixel.getPixel(0, 0) | 0xFF000000;
+        if (pixel != sample) {
+            pixel.recycle();
+        }
+        sample.recycle();
+        return color;
+    }
+
+    private static int sniffFormat(File file) {
+        byte[] header = new byte[MediaFileTypes.HEADER_SIZE];
+        try (FileInputStream in = new FileInputStream(file)) {
+            int length = 0;
+            while (length < header.length) {
+                int read = in.read(header, length, header.length - length);
+                if (read < 0) break;
+                length += read;
+            }
+            return MediaFileTypes.sniff(header, length);
+        } catch (IOException | SecurityException e) {
+            Log.w(TAG, "文件不可读: " + file.getPath());
+            return MediaFileTypes.FORMAT_UNKNOWN;
+        }
+    }
+}
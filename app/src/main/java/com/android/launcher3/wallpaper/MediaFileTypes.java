@@ -0,0 +1,135 @@
+package com.android.launcher3.wallpaper;
+
+/**
+ * 文件类型判断：扫描时先按扩展名（忽略大小写且不分配新字符串）粗筛，
+ * 再读取文件头确定真实格式；不依赖Android API，可以直接在JVM上做基准测试
+ */
+public final class MediaFileTypes {
+    public static final int FORMAT_UNKNOWN = 0;
+    public static final int FORMAT_PNG = 1;
+    public static final int FORMAT_JPEG = 2;
+    public static final int FORMAT_WEBP = 3;
+    public static final int FORMAT_HEIF = 4;
+    public static final int FORMAT_GIF = 5;
+    public static final int FORMAT_PAG = 6;
+
+    /** 识别格式需要的文件头字节数 */
+    public static final int HEADER_SIZE = 12;
+
+    // 文件头签名，sniff在扫描时对每个文件调用，签名预先分配好
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A};
+    private static final byte[] JPEG_SIGNATURE = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF};
+    private static final byte[] RIFF_SIGNATURE = {'R', 'I', 'F', 'F'};
+    private static final byte[] WEBP_SIGNATURE = {'W', 'E', 'B', 'P'};
+    private static final byte[] FTYP_SIGNATURE = {'f', 't', 'y', 'p'};
+    private static final byte[] GIF_SIGNATURE = {'G', 'I', 'F', '8'};
+    private static final byte[] PAG_SIGNATURE = {'P', 'A', 'G'};
+    private static final byte[][] HEIF_BRANDS = {
+            {'h', 'e', 'i', 'c'},
+            {'h', 'e', 'i', 'x'},
+            {'h', 'e', 'v', 'c'},
+            {'m', 'i', 'f', '1'},
+            {'m', 's', 'f', '1'},
+    };
+
+    private MediaFileTypes() {
+    }
+
+    /**
+     * 是否是支持的图片或PAG文件
+     */
+    public static boolean isSupportedName(String name) {
+        return isImage(name) || isPag(name);
+    }
+
+    public static boolean isImage(String name) {
+        return endsWithIgnoreCase(name, ".png") || isJpeg(name)
+                || endsWithIgnoreCase(name, ".webp")
+                || endsWithIgnoreCase(name, ".heic")
+                || endsWithIgnoreCase(name, ".heif")
+                || endsWithIgnoreCase(name, ".gif");
+    }
+
+    public static boolean isJpeg(String name) {
+        return endsWithIgnoreCase(name, ".jpg") || endsWithIgnoreCase(name, ".jpeg");
+    }
+
+    public static boolean isPag(String name) {
+        return endsWithIgnoreCase(name, ".pag");
+    }
+
+    /**
+     * 只按扩展名推断格式，用于无法读取文件头的场景
+     */
+    public static int formatForName(String name) {
+        if (endsWithIgnoreCase(name, ".png")) return FORMAT_PNG;
+        if (isJpeg(name)) return FORMAT_JPEG;
+        if (endsWithIgnoreCase(name, ".webp")) return FORMAT_WEBP;
+        if (endsWithIgnoreCase(name, ".heic") || endsWithIgnoreCase(name, ".heif")) return FORMAT_HEIF;
+        if (endsWithIgnoreCase(name, ".gif")) return FORMAT_GIF;
+        if (isPag(name)) return FORMAT_PAG;
+        return FORMAT_UNKNOWN;
+    }
+
+    /**
+     * 按MediaStore的MIME类型推断格式
+     */
+    public static int formatForMimeType(String mimeType) {
+        if (mimeType == null) return FORMAT_UNKNOWN;
+        switch (mimeType) {
+            case "image/png": return FORMAT_PNG;
+            case "image/jpeg": return FORMAT_JPEG;
+            case "image/webp": return FORMAT_WEBP;
+            case "image/heif":
+            case "image/heic": return FORMAT_HEIF;
+            case "image/gif": return FORMAT_GIF;
+            default: return FORMAT_UNKNOWN;
+        }
+    }
+
+    /**
+     * 根据文件头识别格式
+     * @param length header中的有效字节数，不足时只能识别较短的签名
+     */
+    public static int sniff(byte[] header, int length) {
+        if (startsWith(header, length, 0, PNG_SIGNATURE)) {
+            return FORMAT_PNG;
+        }
+        if (startsWith(header, length, 0, JPEG_SIGNATURE)) {
+            return FORMAT_JPEG;
+        }
+        if (startsWith(header, length, 0, RIFF_SIGNATURE) && startsWith(header, length, 8, WEBP_SIGNATURE)) {
+            return FORMAT_WEBP;
+        }
+        if (startsWith(header, length, 4, FTYP_SIGNATURE) && isHeifBrand(header, length)) {
+            return FORMAT_HEIF;
+        }
+        if (startsWith(header, length, 0, GIF_SIGNATURE)) {
+            return FORMAT_GIF;
+        }
+        if (startsWith(header, length, 0, PAG_SIGNATURE)) {
+            return FORMAT_PAG;
+        }
+        return FORMAT_UNKNOWN;
+    }
+
+    private static boolean isHeifBrand(byte[] header, int length) {
+        for (byte[] brand : HEIF_BRANDS) {
+            if (startsWith(header, length, 8, brand)) return true;
+        }
+        return false;
+    }
+
+    private static boolean startsWith(byte[] header, int length, int offset, byte[] signature) {
+        if (offset + signature.length > length) return false;
+        for (int i = 0; i < signature.length; i++) {
+            if (header[offset + i] != signature[i]) return false;
+        }
+        return true;
+    }
+
+    private static boolean endsWithIgnoreCase(String name, String suffix) {
+        int offset = name.length() - suffix.length();
+        return offset >= 0 && name.regionMatches(true, offset, suffix, 0, suffix.length());
+    }
+}
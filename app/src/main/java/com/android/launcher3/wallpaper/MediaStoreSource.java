@@ -0,0 +1,160 @@
+package com.android.launcher3.wallpaper;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.Environment;
+import android.provider.MediaStore;
+import android.util.Log;
+
+/**
+ * 通过MediaStore查询壁纸目录（含子目录）中的图片和PAG文件，
+ * 使用系统已索引的元数据，按窗口分页读取游标，不会一次性加载整个媒体库
+ */
+public class MediaStoreSource {
+    private static final String TAG = "MediaStoreSource";
+
+    // 每次查询的行数
+    private static final int PAGE_SIZE = 256;
+
+    private static final String[] PROJECTION = {
+        MediaStore.Files.FileColumns._ID,
+        MediaStore.Files.FileColumns.DISPLAY_NAME,
+        MediaStore.Files.FileColumns.RELATIVE_PATH,
+        MediaStore.Files.FileColumns.SIZE,
+        MediaStore.Files.FileColumns.DATE_MODIFIED,
+        MediaStore.Files.FileColumns.WIDTH,
+        MediaStore.Files.FileColumns.HEIGHT,
+        MediaStore.Files.FileColumns.MIME_TYPE
+    };
+
+    // 支持的图片格式和.pag文件（MediaStore把PAG记为普通文件）
+    private static final String SELECTION =
+            MediaStore.Files.FileColumns.RELATIVE_PATH + " LIKE ? AND ("
+            + "(" + MediaStore.Files.FileColumns.MEDIA_TYPE + " = "
+            + MediaStore.Files.FileColumns.MEDIA_TYPE_IMAGE
+            + " AND " + MediaStore.Files.FileColumns.MIME_TYPE + " IN ('image/png', 'image/jpeg', 'image/webp', 'image/heif', 'image/heic', 'image/gif'))"
+            + " OR " + MediaStore.Files.FileColumns.DISPLAY_NAME + " LIKE '%.pag')";
+
+    // 按目录和文件名排序，和目录扫描的顺序一致，_ID保证分页时顺序稳定
+    private static final String SORT_ORDER =
+            MediaStore.Files.FileColumns.RELATIVE_PATH + " ASC, "
+            + MediaStore.Files.FileColumns.DISPLAY_NAME + " ASC, "
+            + MediaStore.Files.FileColumns._ID + " ASC";
+
+    public interface OnItemFoundListener {
+        /** 扫描线程回调，返回false时停止查询 */
+        boolean onItemFound(ImageItem item);
+    }
+
+    public interface PlaceholderColors {
+        /**
+         * 扫描线程回调，创建条目前查询已知的占位颜色，没有时返回0
+         * @param lastModified 毫秒，MediaStore只精确到秒
+         */
+        int placeholderColorOf(String directory, String name, long size, long lastModified);
+    }
+
+    private final ContentResolver resolver;
+    private final String relativePath;
+    private final Uri filesUri = MediaStore.Files.getContentUri(MediaStore.VOLUME_EXTERNAL);
+
+    /**
+     * @param relativePath 相对外部存储根目录的路径，如 "LionWallpaper/"
+     */
+    public MediaStoreSource(ContentResolver resolver, String relativePath) {
+        this.resolver = resolver;
+        this.relativePath = relativePath.endsWith("/") ? relativePath : relativePath + "/";
+    }
+
+    /**
+     * 分页查询，每读到一个条目回调一次，必须在后台线程调用
+     * @param placeholders 可以为null
+     * @return 找到的条目数
+     */
+    public int query(PlaceholderColors placeholders, OnItemFoundListener listener) {
+        String root = Environment.getExternalStorageDirectory().getPath() + "/";
+        String lastRelativePath = null;
+        String lastDirectory = null;
+        int found = 0;
+        int offset = 0;
+
+        while (true) {
+            Bundle args = new Bundle();
+            args.putString(ContentResolver.QUERY_ARG_SQL_SELECTION, SELECTION);
+            args.putStringArray(ContentResolver.QUERY_ARG_SQL_SELECTION_ARGS,
+                    new String[] {relativePath + "%"});
+            args.putString(ContentResolver.QUERY_ARG_SQL_SORT_ORDER, SORT_ORDER);
+            args.putInt(ContentResolver.QUERY_ARG_LIMIT, PAGE_SIZE);
+            args.putInt(ContentResolver.QUERY_ARG_OFFSET, offset);
+
+            int rows;
+            try (Cursor cursor = resolver.query(filesUri, PROJECTION, args, null)) {
+                if (cursor == null) {
+                    Log.e(TAG, "MediaStore查询失败: " + relativePath);
+                    return found;
+                }
+                rows = cursor.getCount();
+
+                int idColumn = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns._ID);
+                int nameColumn = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.DISPLAY_NAME);
+                int pathColumn = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.RELATIVE_PATH);
+                int sizeColumn = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.SIZE);
+                int modifiedColumn = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.DATE_MODIFIED);
+                int widthColumn = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.WIDTH);
+                int heightColumn = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.HEIGHT);
+                int mimeColumn = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.MIME_TYPE);
+
+                while (cursor.moveToNext()) {
+                    String name = cursor.getString(nameColumn);
+                    String rowRelativePath = cursor.getString(pathColumn);
+                    if (name == null || rowRelativePath == null) continue;
+
+                    // 结果按目录排序，同一目录的条目共享同一个目录字符串
+                    if (!rowRelativePath.equals(lastRelativePath)) {
+                        lastRelativePath = rowRelativePath;
+                        String directory = root + rowRelativePath;
+                        lastDirectory = directory.endsWith("/")
+                                ? directory.substring(0, directory.length() - 1) : directory;
+                    }
+
+                    // 图片的MIME类型由MediaStore按文件内容识别，比扩展名可靠
+                    int format = MediaFileTypes.formatForMimeType(cursor.getString(mimeColumn));
+                    if (format == MediaFileTypes.FORMAT_UNKNOWN && MediaFileTypes.isPag(name)) {
+                        format = MediaFileTypes.FORMAT_PAG;
+                    }
+                    if (format == MediaFileTypes.FORMAT_UNKNOWN) continue;
+
+                    long id = cursor.getLong(idColumn);
+                    Uri uri = format == MediaFileTypes.FORMAT_PAG
+                            ? ContentUris.withAppendedId(filesUri, id)
+                            : ContentUris.withAppendedId(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, id);
+                    long size = cursor.getLong(sizeColumn);
+                    long lastModified = cursor.getLong(modifiedColumn) * 1000L;
+                    // 占位颜色在条目发布前确定，之后条目不再修改
+                    int placeholderColor = placeholders != null
+                            ? placeholders.placeholderColorOf(lastDirectory, name, size, lastModified) : 0;
+                    ImageItem item = new ImageItem(lastDirectory, name, uri, format, size, lastModified,
+                            cursor.getInt(widthColumn), cursor.getInt(heightColumn), placeholderColor);
+                    found++;
+                    if (!listener.onItemFound(item)) {
+                        return found;
+                    }
+                }
+            } catch (SecurityException | IllegalArgumentException e) {
+                Log.e(TAG, "MediaStore查询异常: " + e.getMessage());
+                return found;
+            }
+
+            if (rows < PAGE_SIZE) {
+                break;
+            }
+            offset += rows;
+        }
+
+        Log.d(TAG, "MediaStore查询完成，找到 " + found + " 个文件");
+        return found;
+    }
+}
@@ -0,0 +1,188 @@
+package com.android.launcher3.wallpaper;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import androidx.annotation.NonNull;
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.MemoryCategory;
+
+/**
+ * 按系统内存压力分级收缩缓存
+ * Glide自己也监听onTrimMemory并修剪缓存，这里额外调低它的容量上限，
+ * 同时收缩PAG解析缓存、释放非选中页面的PAG渲染缓存并缩小预加载范围；
+ * 前台一段时间没有新的压力或回到前台时恢复，回收的字节数记录在PerfMetrics中
+ */
+public class MemoryGovernor implements ComponentCallbacks2 {
+    private static final String TAG = "MemoryGovernor";
+
+    public static final int STAGE_NORMAL = 0;
+    public static final int STAGE_MODERATE = 1;
+    public static final int STAGE_LOW = 2;
+    public static final int STAGE_CRITICAL = 3;
+
+    // 前台运行时多久没有新的压力视为已经缓解
+    private static final long RESTORE_DELAY_MS = 30_000L;
+    // 各级别下PAG解析缓存的容量（字节）
+    private static final int PAG_CACHE_MODERATE_BYTES = 16 * 1024 * 1024;
+    private static final int PAG_CACHE_LOW_BYTES = 4 * 1024 * 1024;
+
+    private final Context context;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable restoreRunnable = this::restore;
+
+    private PagePreloader preloader;
+    private PagPlaybackManager playbackManager;
+    // 压力出现前的预加载范围，恢复时使用
+    private int imagePreloadRadius;
+    private int pagPreloadRadius;
+    private int stage = STAGE_NORMAL;
+    private boolean registered;
+
+    public MemoryGovernor(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    public void register() {
+        if (registered) return;
+        registered = true;
+        context.registerComponentCallbacks(this);
+    }
+
+    public void unregister() {
+        if (!registered) return;
+        registered = false;
+        context.unregisterComponentCallbacks(this);
+        mainHandler.removeCallbacks(restoreRunnable);
+    }
+
+    /**
+     * 设置受管理的预加载和PAG播放，重新创建Adapter时调用
+     */
+    public void attach(PagePreloader preloader, PagPlaybackManager playbackManager) {
+        this.preloader = preloader;
+        this.playbackManager = playbackManager;
+        imagePreloadRadius = preloader.getImagePreloadRadius();
+        pagPreloadRadius = preloader.getPagPreloadRadius();
+        if (stage != STAGE_NORMAL) {
+            applyPreloadBudget(stage);
+        }
+    }
+
+    /**
+     * 回到前台时调用，后台期间的压力级别不再适用
+     */
+    public void onForeground() {
+        if (stage != STAGE_NORMAL) {
+            restore();
+        }
+    }
+
+    public int getStage() {
+        return stage;
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public void onTrimMemory(int level) {
+        PerfMetrics.get().increment(PerfMetrics.MEMORY_TRIM_PREFIX + level);
+        int newStage;
+        if (level >= TRIM_MEMORY_MODERATE || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            newStage = STAGE_CRITICAL;
+        } else if (level >= TRIM_MEMORY_BACKGROUND || level == TRIM_MEMORY_RUNNING_LOW) {
+            newStage = STAGE_LOW;
+        } else if (level >= TRIM_MEMORY_UI_HIDDEN || level == TRIM_MEMORY_RUNNING_MODERATE) {
+            newStage = STAGE_MODERATE;
+        } else {
+            return;
+        }
+
+        mainHandler.removeCallbacks(restoreRunnable);
+        if (level < TRIM_MEMORY_UI_HIDDEN) {
+            // 前台的压力级别不会再通知缓解，一段时间没有新的回调就恢复
+            mainHandler.postDelayed(restoreRunnable, RESTORE_DELAY_MS);
+        }
+        // 同一级别重复通知时也要再回收一次，缓存可能已经重新长起来
+        shrink(Math.max(newStage, stage), level);
+    }
+
+    @Override
+    public void onLowMemory() {
+        PerfMetrics.get().increment(PerfMetrics.MEMORY_TRIM_PREFIX + "low_memory");
+        shrink(STAGE_CRITICAL, TRIM_MEMORY_COMPLETE);
+    }
+
+    @Override
+    public void onConfigurationChanged(@NonNull Configuration newConfig) {
+    }
+
+    private void shrink(int newStage, int level) {
+        stage = newStage;
+        long glideBefore = WallpaperGlideModule.getCachedBytes();
+        PagFileCache pagFileCache = PagFileCache.getInstance();
+        long pagBefore = pagFileCache.size();
+
+        Glide glide = Glide.get(context);
+        // LOW把内存缓存和位图池的上限减半，超出部分立即淘汰
+        glide.setMemoryCategory(MemoryCategory.LOW);
+        if (newStage >= STAGE_CRITICAL) {
+            glide.clearMemory();
+            pagFileCache.evictAll();
+        } else if (newStage >= STAGE_LOW) {
+            glide.trimMemory(level);
+            pagFileCache.resize(PAG_CACHE_LOW_BYTES);
+        } else {
+            pagFileCache.resize(PAG_CACHE_MODERATE_BYTES);
+        }
+
+        int freedViews = playbackManager != null ? playbackManager.freeInactive() : 0;
+        applyPreloadBudget(newStage);
+
+        long glideReclaimed = Math.max(glideBefore - WallpaperGlideModule.getCachedBytes(), 0L);
+        long pagReclaimed = Math.max(pagBefore - pagFileCache.size(), 0L);
+        PerfMetrics metrics = PerfMetrics.get();
+        metrics.setGauge(PerfMetrics.MEMORY_STAGE, newStage);
+        metrics.add(PerfMetrics.MEMORY_RECLAIMED_GLIDE, glideReclaimed);
+        metrics.add(PerfMetrics.MEMORY_RECLAIMED_PAG, pagReclaimed);
+        metrics.add(PerfMetrics.MEMORY_FREED_PAG_VIEWS, freedViews);
+        WallpaperGlideModule.reportCacheSizes();
+        Log.d(TAG, "内存压力: level " + level + ", 级别: " + newStage
+                + ", 回收Glide: " + glideReclaimed / 1024 + "KB, PAG: " + pagReclaimed / 1024
+                + "KB, 释放PAG视图: " + freedViews);
+    }
+
+    private void restore() {
+        mainHandler.removeCallbacks(restoreRunnable);
+        if (stage == STAGE_NORMAL) return;
+
+        stage = STAGE_NORMAL;
+        Glide.get(context).setMemoryCategory(MemoryCategory.NORMAL);
+        PagFileCache.getInstance().restoreDefaultSize();
+        applyPreloadBudget(STAGE_NORMAL);
+        PerfMetrics.get().setGauge(PerfMetrics.MEMORY_STAGE, STAGE_NORMAL);
+        WallpaperGlideModule.reportCacheSizes();
+        Log.d(TAG, "内存压力缓解，恢复缓存和预加载范围");
+    }
+
+    private void applyPreloadBudget(int stage) {
+        if (preloader == null) return;
+        switch (stage) {
+            case STAGE_NORMAL:
+                preloader.setImagePreloadRadius(imagePreloadRadius);
+                preloader.setPagPreloadRadius(pagPreloadRadius);
+                break;
+            case STAGE_MODERATE:
+                // 只预加载相邻一页图片，PAG翻到时再解析
+                preloader.setImagePreloadRadius(Math.min(imagePreloadRadius, 1));
+                preloader.setPagPreloadRadius(0);
+                break;
+            default:
+                preloader.setImagePreloadRadius(0);
+                preloader.setPagPreloadRadius(0);
+                break;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.android.launcher3.wallpaper;
+
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+import android.util.Log;
+import android.util.LruCache;
+import org.libpag.PAGFile;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * 已解析PAG文件的LRU缓存，所有页面共享
+ * key为文件路径+修改时间，文件被改写后自动失效；容量按文件字节数计算。
+ * 同一个PAGFile不能同时挂到多个PAGView上，取出时返回共享解析数据的副本。
+ * 内置PAG放在assets下且不压缩，由libpag通过AssetManager直接读取APK中的数据，不经过Java堆，每个进程只解析一次
+ */
+public class PagFileCache {
+    private static final String TAG = "PagFileCache";
+
+    private static final int DEFAULT_MAX_BYTES = 32 * 1024 * 1024;
+
+    private static PagFileCache instance;
+
+    private static class CachedFile {
+        final PAGFile pagFile;
+        final int byteSize;
+
+        CachedFile(PAGFile pagFile, int byteSize) {
+            this.pagFile = pagFile;
+            this.byteSize = byteSize;
+        }
+    }
+
+    private final LruCache<String, CachedFile> cache;
+
+    public static synchronized PagFileCache getInstance() {
+        if (instance == null) {
+            instance = new PagFileCache(DEFAULT_MAX_BYTES);
+        }
+        return instance;
+    }
+
+    PagFileCache(int maxBytes) {
+        cache = new LruCache<String, CachedFile>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, CachedFile value) {
+                return value.byteSize;
+            }
+        };
+    }
+
+    /**
+     * 取出可直接设置给PAGView的PAGFile，未缓存时在当前线程读取并解析
+     * @param lastModified 文件修改时间，未知时传0，会读取一次文件属性
+     * @return 解析失败返回null
+     */
+    public PAGFile obtain(String filePath, long lastModified) {
+        CachedFile cached = getOrLoad(filePath, lastModified);
+        return cached != null ? cached.pagFile.copyOriginal() : null;
+    }
+
+    /**
+     * 取出内置PAG（assets），未缓存时在当前线程解析
+     * @return 解析失败返回null
+     */
+    public PAGFile obtainAsset(AssetManager assets, String assetPath) {
+        CachedFile cached = getOrLoadAsset(assets, assetPath);
+        return cached != null ? cached.pagFile.copyOriginal() : null;
+    }
+
+    /**
+     * 一个周期的时长（微秒），未缓存时在当前线程解析；直接读取缓存的原始数据，不创建副本
+     * @return 解析失败返回0
+     */
+    public long durationOf(String filePath, long lastModified) {
+        CachedFile cached = getOrLoad(filePath, lastModified);
+        return cached != null ? cached.pagFile.duration() : 0L;
+    }
+
+    public long assetDurationOf(AssetManager assets, String assetPath) {
+        CachedFile cached = getOrLoadAsset(assets, assetPath);
+        return cached != null ? cached.pagFile.duration() : 0L;
+    }
+
+    /**
+     * 提前读取并解析，用于后台预加载
+     */
+    public void preload(String filePath, long lastModified) {
+        getOrLoad(filePath, lastModified);
+    }
+
+    public void preloadAsset(AssetManager assets, String assetPath) {
+        getOrLoadAsset(assets, assetPath);
+    }
+
+    public boolean contains(String filePath, long lastModified) {
+        return cache.get(keyOf(filePath, resolveLastModified(filePath, lastModified))) != null;
+    }
+
+    /**
+     * 移除某个文件的所有缓存版本
+     */
+    public void invalidate(String filePath) {
+        String prefix = filePath + '@';
+        for (String key : cache.snapshot().keySet()) {
+            if (key.startsWith(prefix)) {
+                cache.remove(key);
+            }
+        }
+    }
+
+    public void trimToSize(int maxBytes) {
+        cache.trimToSize(maxBytes);
+    }
+
+    /**
+     * 调整容量上限，超出的部分立即淘汰；内存紧张时缩小，缓解后恢复为默认值
+     */
+    public void resize(int maxBytes) {
+        cache.resize(Math.max(maxBytes, 1));
+    }
+
+    public void restoreDefaultSize() {
+        resize(DEFAULT_MAX_BYTES);
+    }
+
+    public void evictAll() {
+        cache.evictAll();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public int maxSize() {
+        return cache.maxSize();
+    }
+
+    private CachedFile getOrLoad(String filePath, long lastModified) {
+        File file = new File(filePath);
+        long modified = resolveLastModified(filePath, lastModified);
+        String key = keyOf(filePath, modified);
+
+        CachedFile cached = cache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        PAGFile pagFile = PAGFile.Load(filePath);
+        if (pagFile == null) {
+            Log.w(TAG, "PAG解析失败: " + filePath);
+            return null;
+        }
+        // 同一路径的旧版本不会再被命中，直接移除
+        invalidate(filePath);
+        cached = new CachedFile(pagFile, (int) Math.min(Math.max(file.length(), 1L), Integer.MAX_VALUE));
+        cache.put(key, cached);
+        Log.d(TAG, "缓存PAG文件: " + filePath + ", 当前: " + cache.size() + "/" + cache.maxSize());
+        return cached;
+    }
+
+    private CachedFile getOrLoadAsset(AssetManager assets, String assetPath) {
+        // APK在进程生命周期内不会变化，资源路径即可作为key
+        String key = "asset:" + assetPath;
+        CachedFile cached = cache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        // libpag在native层打开资源，未压缩时直接映射APK中的数据
+        PAGFile pagFile = PAGFile.Load(assets, assetPath);
+        if (pagFile == null) {
+            Log.w(TAG, "内置PAG解析失败: " + assetPath);
+            return null;
+        }
+        cached = new CachedFile(pagFile, assetLength(assets, assetPath));
+        cache.put(key, cached);
+        Log.d(TAG, "缓存内置PAG: " + assetPath + ", 当前: " + cache.size() + "/" + cache.maxSize());
+        return cached;
+    }
+
+    private static int assetLength(AssetManager assets, String assetPath) {
+        try (AssetFileDescriptor descriptor = assets.openFd(assetPath)) {
+            return (int) Math.min(Math.max(descriptor.getLength(), 1L), Integer.MAX_VALUE);
+        } catch (IOException e) {
+            // 被压缩的资源无法获取文件描述符，需要在build.gradle中设置noCompress
+            Log.w(TAG, "内置PAG被压缩: " + assetPath);
+            return 1;
+        }
+    }
+
+    private static long resolveLastModified(String filePath, long lastModified) {
+        return lastModified != 0L ? lastModified : new File(filePath).lastModified();
+    }
+
+    private static String keyOf(String filePath, long lastModified) {
+        return filePath + '@' + lastModified;
+    }
+}
@@ -0,0 +1,166 @@
+package com.android.launcher3.wallpaper;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import androidx.viewpager2.widget.ViewPager2;
+import org.libpag.PAGView;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 统一管理已绑定页面上的PAG播放
+ * 只有选中的页面播放，其余页面停在当前帧；Activity暂停时全部暂停，恢复时只恢复选中页；
+ * 页面回收或Activity销毁时确定性地停止并释放缓存
+ */
+public class PagPlaybackManager extends ViewPager2.OnPageChangeCallback {
+    private static final String TAG = "PagPlaybackManager";
+
+    /**
+     * 选中页的PAG播放完一个周期
+     */
+    public interface OnLoopListener {
+        /** 主线程回调 */
+        void onLoopCompleted(long itemId);
+    }
+
+    private final ImagePagerAdapter adapter;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // 已绑定PAG的视图及其对应页面的稳定ID
+    private final Map<PAGView, Long> attachedViews = new HashMap<>();
+    private long selectedItemId = Long.MIN_VALUE;
+    private boolean resumed = true;
+    private boolean restartOnSelect;
+    private OnLoopListener loopListener;
+
+    public PagPlaybackManager(ImagePagerAdapter adapter) {
+        this.adapter = adapter;
+    }
+
+    @Override
+    public void onPageSelected(int position) {
+        if (position < 0 || position >= adapter.getItemCount()) return;
+        setSelectedItem(adapter.getItemId(position));
+    }
+
+    /**
+     * 页面绑定PAG后调用，是否播放由当前选中页和Activity状态决定
+     */
+    public void attach(PAGView pagView, long itemId) {
+        attachedViews.put(pagView, itemId);
+        updatePlayback(pagView, itemId);
+    }
+
+    /**
+     * 页面不再显示PAG时调用，停止播放并释放缓存
+     */
+    public void detach(PAGView pagView) {
+        if (attachedViews.remove(pagView) != null) {
+            pagView.stop();
+            pagView.freeCache();
+        }
+    }
+
+    public void setSelectedItem(long itemId) {
+        if (selectedItemId == itemId) return;
+        selectedItemId = itemId;
+        if (restartOnSelect) {
+            restartSelected();
+        }
+        updateAll();
+    }
+
+    /**
+     * 选中页的PAG回到第一帧，正在播放时从头继续
+     */
+    public void restartSelected() {
+        for (Map.Entry<PAGView, Long> entry : attachedViews.entrySet()) {
+            if (entry.getValue() == selectedItemId) {
+                entry.getKey().setProgress(0);
+            }
+        }
+    }
+
+    /**
+     * 设置后新选中的页面从头播放，而不是从上次暂停的帧继续，幻灯片用来保证播放完整的一个周期
+     */
+    public void setRestartOnSelect(boolean restart) {
+        this.restartOnSelect = restart;
+    }
+
+    public void setOnLoopListener(OnLoopListener listener) {
+        this.loopListener = listener;
+    }
+
+    /**
+     * PAGView播放到周期结尾时由页面调用，可能不在主线程
+     */
+    public void onAnimationRepeat(PAGView pagView) {
+        mainHandler.post(() -> {
+            Long itemId = attachedViews.get(pagView);
+            if (itemId != null && itemId == selectedItemId && loopListener != null) {
+                loopListener.onLoopCompleted(itemId);
+            }
+        });
+    }
+
+    public void onResume() {
+        resumed = true;
+        updateAll();
+    }
+
+    public void onPause() {
+        resumed = false;
+        updateAll();
+    }
+
+    /**
+     * 释放所有PAG视图，Activity销毁或Adapter脱离时调用
+     */
+    public void releaseAll() {
+        for (PAGView pagView : attachedViews.keySet()) {
+            pagView.stop();
+            pagView.freeCache();
+        }
+        Log.d(TAG, "释放PAG视图: " + attachedViews.size());
+        attachedViews.clear();
+    }
+
+    /**
+     * 释放未选中页面的渲染缓存，内存紧张时调用；这些页面再次选中时重新渲染
+     * @return 释放的视图数
+     */
+    public int freeInactive() {
+        int freed = 0;
+        for (Map.Entry<PAGView, Long> entry : attachedViews.entrySet()) {
+            if (entry.getValue() != selectedItemId) {
+                PAGView pagView = entry.getKey();
+                pagView.stop();
+                pagView.freeCache();
+                freed++;
+            }
+        }
+        return freed;
+    }
+
+    private void updateAll() {
+        for (Map.Entry<PAGView, Long> entry : attachedViews.entrySet()) {
+            updatePlayback(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void updatePlayback(PAGView pagView, long itemId) {
+        boolean shouldPlay = resumed && itemId == selectedItemId;
+        if (shouldPlay) {
+            if (!pagView.isPlaying()) {
+                pagView.play();
+            }
+        } else if (pagView.isPlaying()) {
+            // 暂停保留当前帧，重新选中时从这里继续
+            pagView.pause();
+        } else {
+            // 从未播放过的页面也要显示出首帧
+            pagView.flush();
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package com.android.launcher3.wallpaper;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.content.res.AssetManager;
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import org.libpag.PAGFile;
+import org.libpag.PAGPlayer;
+import org.libpag.PAGSurface;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * PAG封面帧的磁盘缓存
+ * 在后台离屏渲染PAG的某一帧并缩小保存，PAG页面滑入时先显示封面，等动画首帧出来再隐藏；
+ * SDCard文件的key为路径+修改时间，内置assets的key为assets路径+APK更新时间，每个版本只渲染一次。
+ * 磁盘文件名的哈希和存在性检查都在后台线程进行，主线程只查内存中已知存在的封面
+ */
+public class PagPosterCache {
+    private static final String TAG = "PagPosterCache";
+
+    private static final String DIR_NAME = "pag_posters";
+    private static final long MAX_DISK_BYTES = 50L * 1024 * 1024;
+    private static final int POSTER_QUALITY = 85;
+    private static final String ASSET_KEY_PREFIX = "asset:";
+
+    private static PagPosterCache instance;
+
+    public interface Callback {
+        /** 主线程回调，生成失败时posterFile为null */
+        void onPosterReady(File posterFile);
+    }
+
+    private final Context context;
+    private final File directory;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "pag-poster");
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // 正在生成的封面及等待它的回调，同一文件只渲染一次，只在主线程访问
+    private final Map<String, List<Callback>> pending = new HashMap<>();
+    // 已渲染或在磁盘上找到的封面，key同pending，只在主线程访问
+    private final Map<String, File> knownPosters = new HashMap<>();
+    // APK的更新时间，内置PAG的封面随APK更新失效，只在后台线程访问
+    private long apkUpdateTime;
+
+    public static synchronized PagPosterCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new PagPosterCache(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private PagPosterCache(Context context) {
+        this.context = context;
+        this.directory = new File(context.getCacheDir(), DIR_NAME);
+    }
+
+    /**
+     * 本进程中已知存在的封面文件，只查内存，没有则返回null；主线程调用
+     */
+    public File getCachedPoster(String filePath, long lastModified) {
+        return knownPosters.get(keyOf(filePath, lastModified));
+    }
+
+    /**
+     * 生成SDCard中PAG文件的封面，已知存在时直接回调；主线程调用
+     * @param progress 封面帧在动画中的位置，0为首帧
+     * @param maxWidth 封面最大宽度
+     * @param maxHeight 封面最大高度
+     */
+    public void requestPoster(String filePath, long lastModified, double progress,
+                              int maxWidth, int maxHeight, Callback callback) {
+        request(keyOf(filePath, lastModified), new Source(null, filePath, lastModified),
+                progress, maxWidth, maxHeight, callback);
+    }
+
+    /**
+     * 生成内置assets中PAG文件的封面，参数同requestPoster
+     */
+    public void requestAssetPoster(AssetManager assets, String assetPath, double progress,
+                                   int maxWidth, int maxHeight, Callback callback) {
+        // APK更新会重启进程，内存中的key不需要带APK版本
+        request(ASSET_KEY_PREFIX + assetPath, new Source(assets, assetPath, 0L),
+                progress, maxWidth, maxHeight, callback);
+    }
+
+    private void request(String key, Source source, double progress,
+                         int maxWidth, int maxHeight, Callback callback) {
+        File known = knownPosters.get(key);
+        if (known != null) {
+            callback.onPosterReady(known);
+            return;
+        }
+
+        List<Callback> waiters = pending.get(key);
+        if (waiters != null) {
+            // 已经在生成，完成后一起回调
+            waiters.add(callback);
+            return;
+        }
+        waiters = new ArrayList<>(2);
+        waiters.add(callback);
+        pending.put(key, waiters);
+
+        executor.execute(() -> {
+            // 上次运行时已经生成的封面直接复用
+            File posterFile = new File(directory, sha1Hex(diskKeyOf(source)) + ".webp");
+            boolean success = posterFile.exists()
+                    || renderPoster(source, progress, maxWidth, maxHeight, posterFile);
+            mainHandler.post(() -> {
+                File result = success ? posterFile : null;
+                if (result != null) {
+                    knownPosters.put(key, result);
+                }
+                for (Callback waiter : pending.remove(key)) {
+                    waiter.onPosterReady(result);
+                }
+            });
+        });
+    }
+
+    /**
+     * 删除某个文件的封面，可以在任意线程调用
+     */
+    public void invalidate(String filePath, long lastModified) {
+        new File(directory, sha1Hex(diskKeyOf(new Source(null, filePath, lastModified))) + ".webp").delete();
+        final String key = keyOf(filePath, lastModified);
+        mainHandler.post(() -> knownPosters.remove(key));
+    }
+
+    private boolean renderPoster(Source source, double progress,
+                                 int maxWidth, int maxHeight, File posterFile) {
+        PAGFile pagFile = source.assets != null
+                ? PagFileCache.getInstance().obtainAsset(source.assets, source.path)
+                : PagFileCache.getInstance().obtain(source.path, source.lastModified);
+        if (pagFile == null || pagFile.width() <= 0 || pagFile.height() <= 0) {
+            Log.w(TAG, "无法生成封面: " + source.path);
+            return false;
+        }
+
+        float scale = Math.min(1f, Math.min(
+                (float) maxWidth / pagFile.width(), (float) maxHeight / pagFile.height()));
+        int width = Math.max(1, Math.round(pagFile.width() * scale));
+        int height = Math.max(1, Math.round(pagFile.height() * scale));
+
+        PAGSurface surface = PAGSurface.MakeOffscreen(width, height);
+        if (surface == null) {
+            Log.w(TAG, "创建离屏Surface失败: " + source.path);
+            return false;
+        }
+        PAGPlayer player = new PAGPlayer();
+        Bitmap bitmap = null;
+        try {
+            player.setSurface(surface);
+            player.setComposition(pagFile);
+            player.setProgress(progress);
+            player.flush();
+            bitmap = surface.makeSnapshot();
+            if (bitmap == null) {
+                return false;
+            }
+            return writeAtomically(bitmap, posterFile);
+        } finally {
+            if (bitmap != null) {
+                bitmap.recycle();
+            }
+            player.release();
+            surface.release();
+        }
+    }
+
+    private boolean writeAtomically(Bitmap bitmap, File posterFile) {
+        if (!directory.exists() && !directory.mkdirs()) {
+            Log.e(TAG, "无法创建封面目录: " + directory);
+            return false;
+        }
+
+        File tmpFile = new File(posterFile.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(tmpFile)) {
+            bitmap.compress(Bitmap.CompressFormat.WEBP_LOSSY, POSTER_QUALITY, out);
+        } catch (IOException e) {
+            Log.e(TAG, "写入封面失败: " + e.getMessage());
+            tmpFile.delete();
+            return false;
+        }
+        if (!tmpFile.renameTo(posterFile)) {
+            tmpFile.delete();
+            return false;
+        }
+        trimToSize();
+        return true;
+    }
+
+    /**
+     * 超出容量时按修改时间从旧到新删除
+     */
+    private void trimToSize() {
+        File[] files = directory.listFiles();
+        if (files == null) return;
+
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        if (total <= MAX_DISK_BYTES) return;
+
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        final Set<File> deleted = new HashSet<>();
+        for (File file : files) {
+            if (total <= MAX_DISK_BYTES) break;
+            long length = file.length();
+            if (file.delete()) {
+                total -= length;
+                deleted.add(file);
+            }
+        }
+        if (!deleted.isEmpty()) {
+            mainHandler.post(() -> knownPosters.values().removeAll(deleted));
+        }
+    }
+
+    private static String keyOf(String filePath, long lastModified) {
+        return filePath + '@' + lastModified;
+    }
+
+    /**
+     * 磁盘文件名的来源，会访问文件系统或PackageManager，只在后台线程调用
+     */
+    private String diskKeyOf(Source source) {
+        if (source.assets != null) {
+            return ASSET_KEY_PREFIX + source.path + '@' + apkUpdateTime();
+        }
+        long modified = source.lastModified != 0L ? source.lastModified : new File(source.path).lastModified();
+        return source.path + '@' + modified;
+    }
+
+    private long apkUpdateTime() {
+        if (apkUpdateTime == 0L) {
+            try {
+                apkUpdateTime = context.getPackageManager()
+                        .getPackageInfo(context.getPackageName(), 0).lastUpdateTime;
+            } catch (PackageManager.NameNotFoundException e) {
+                apkUpdateTime = -1L;
+            }
+        }
+        return apkUpdateTime;
+    }
+
+    /**
+     * 要渲染封面的PAG：assets不为null时path是assets中的路径，否则是SDCard文件路径
+     */
+    private static final class Source {
+        final AssetManager assets;
+        final String path;
+        final long lastModified;
+
+        Source(AssetManager assets, String path, long lastModified) {
+            this.assets = assets;
+            this.path = path;
+            this.lastModified = lastModified;
+        }
+    }
+
+    private static String sha1Hex(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1")
+                    .digest(value.getBytes(StandardCharsets.UTF_8));
+            StringBuilder builder = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                builder.append(Character.forDigit((b >> 4) & 0xF, 16));
+                builder.append(Character.forDigit(b & 0xF, 16));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(value.hashCode());
+        }
+    }
+}
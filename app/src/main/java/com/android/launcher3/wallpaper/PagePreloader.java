@@ -0,0 +1,211 @@
+package com.android.launcher3.wallpaper;
+
+import android.content.Context;
+import android.content.res.AssetManager;
+import androidx.viewpager2.widget.ViewPager2;
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.request.target.Target;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 预加载当前页前后的页面
+ * 图片预热Glide内存缓存，PAG在后台线程提前解析进PagFileCache，两者各自有独立的预加载范围；
+ * 翻页后不在范围内的预加载会被取消
+ */
+public class PagePreloader extends ViewPager2.OnPageChangeCallback {
+    private static final String TAG = "PagePreloader";
+
+    private static final int DEFAULT_IMAGE_RADIUS = 2;
+    private static final int DEFAULT_PAG_RADIUS = 1;
+
+    private final ImagePagerAdapter adapter;
+    private final RequestManager requestManager;
+    private final AssetManager assets;
+    private final PagFileCache pagFileCache = PagFileCache.getInstance();
+    private final ExecutorService pagExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "pag-preloader");
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+
+    // 进行中或已完成的预加载，key为页面稳定ID
+    private final Map<Long, Target<?>> imageTargets = new HashMap<>();
+    private final Map<Long, Future<?>> pagTasks = new HashMap<>();
+
+    private int imageRadius = DEFAULT_IMAGE_RADIUS;
+    private int pagRadius = DEFAULT_PAG_RADIUS;
+    private int lastPosition = -1;
+    private boolean forward = true;
+
+    public PagePreloader(Context context, ImagePagerAdapter adapter) {
+        this.adapter = adapter;
+        this.requestManager = Glide.with(context);
+        this.assets = context.getAssets();
+    }
+
+    /**
+     * 设置图片预加载范围（当前页前后各N页），0表示不预加载
+     */
+    public void setImagePreloadRadius(int radius) {
+        this.imageRadius = Math.max(radius, 0);
+        refresh();
+    }
+
+    /**
+     * 设置PAG预加载范围（当前页前后各N页），0表示不预加载
+     */
+    public void setPagPreloadRadius(int radius) {
+        this.pagRadius = Math.max(radius, 0);
+        refresh();
+    }
+
+    public int getImagePreloadRadius() { return imageRadius; }
+    public int getPagPreloadRadius() { return pagRadius; }
+
+    @Override
+    public void onPageSelected(int position) {
+        if (lastPosition >= 0 && position != lastPosition) {
+            forward = position > lastPosition;
+        }
+        lastPosition = position;
+        preloadAround(position);
+    }
+
+    /**
+     * 取消所有预加载，Activity销毁时调用
+     */
+    public void release() {
+        for (Target<?> target : imageTargets.values()) {
+            requestManager.clear(target);
+        }
+        imageTargets.clear();
+        for (Future<?> task : pagTasks.values()) {
+            task.cancel(true);
+        }
+        pagTasks.clear();
+        pagExecutor.shutdownNow();
+    }
+
+    /**
+     * 释放已删除条目的预加载，只清理这些条目持有的位图，其它页面的缓存不受影响
+     */
+    public void evict(Collection<ImageItem> items) {
+        for (ImageItem item : items) {
+            Target<?> target = imageTargets.remove(item.getStableId());
+            if (target != null) {
+                requestManager.clear(target);
+            }
+            Future<?> task = pagTasks.remove(item.getStableId());
+            if (task != null) {
+                task.cancel(true);
+            }
+        }
+    }
+
+    private void refresh() {
+        if (lastPosition >= 0) {
+            preloadAround(lastPosition);
+        }
+    }
+
+    private void preloadAround(int position) {
+        List<ImageItem> items = adapter.getCurrentList();
+        if (position < 0 || position >= items.size()) return;
+
+        cancelOutside(items, position);
+
+        // 先加载滑动方向上的页面，再加载反方向的
+        int direction = forward ? 1 : -1;
+        int maxRadius = Math.max(imageRadius, pagRadius);
+        for (int distance = 1; distance <= maxRadius; distance++) {
+            preloadAt(items, position + distance * direction, distance);
+            preloadAt(items, position - distance * direction, distance);
+        }
+    }
+
+    private void preloadAt(List<ImageItem> items, int position, int distance) {
+        if (position < 0 || position >= items.size()) return;
+
+        ImageItem item = items.get(position);
+        if (item.getType() == ImageItem.TYPE_PAG) {
+            if (distance <= pagRadius) {
+                preloadPag(item);
+            }
+        } else if (distance <= imageRadius) {
+            preloadImage(item);
+        }
+    }
+
+    private void preloadImage(ImageItem item) {
+        long id = item.getStableId();
+        if (imageTargets.containsKey(id) || item.getGlideSource() == null) return;
+
+        // 模型和选项必须和页面绑定时一致，才能命中同一个内存缓存
+        Target<?> target = requestManager
+                .load(item)
+                .apply(adapter.getDecodeConfig().optionsFor(item))
+                .preload();
+        imageTargets.put(id, target);
+    }
+
+    private void preloadPag(ImageItem item) {
+        final String filePath = item.getFilePath();
+        final long lastModified = item.getLastModified();
+        final String assetPath = item.getAssetPath();
+        long id = item.getStableId();
+        if ((filePath == null && assetPath == null) || pagTasks.containsKey(id)) {
+            return;
+        }
+
+        // 解析结果进入共享缓存，翻到该页时直接复用
+        pagTasks.put(id, pagExecutor.submit(() -> {
+            if (Thread.currentThread().isInterrupted()) return;
+            if (assetPath != null) {
+                pagFileCache.preloadAsset(assets, assetPath);
+            } else {
+                pagFileCache.preload(filePath, lastModified);
+            }
+        }));
+    }
+
+    /**
+     * 取消已经不在预加载范围内的请求，例如快速滑过的页面
+     */
+    private void cancelOutside(List<ImageItem> items, int position) {
+        Map<Long, Integer> keep = new HashMap<>();
+        int maxRadius = Math.max(imageRadius, pagRadius);
+        int from = Math.max(position - maxRadius, 0);
+        int to = Math.min(position + maxRadius, items.size() - 1);
+        for (int i = from; i <= to; i++) {
+            keep.put(items.get(i).getStableId(), Math.abs(i - position));
+        }
+
+        Iterator<Map.Entry<Long, Target<?>>> imageIterator = imageTargets.entrySet().iterator();
+        while (imageIterator.hasNext()) {
+            Map.Entry<Long, Target<?>> entry = imageIterator.next();
+            Integer distance = keep.get(entry.getKey());
+            if (distance == null || distance > imageRadius) {
+                requestManager.clear(entry.getValue());
+                imageIterator.remove();
+            }
+        }
+
+        Iterator<Map.Entry<Long, Future<?>>> pagIterator = pagTasks.entrySet().iterator();
+        while (pagIterator.hasNext()) {
+            Map.Entry<Long, Future<?>> entry = pagIterator.next();
+            Integer distance = keep.get(entry.getKey());
+            if (distance == null || distance > pagRadius) {
+                entry.getValue().cancel(true);
+                pagIterator.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.android.launcher3.wallpaper;
+
+import android.os.SystemClock;
+import org.json.JSONException;
+import org.json.JSONObject;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 应用内性能指标，计时直方图和计数器都是无锁的，可以在任意线程记录；
+ * 通过 adb shell dumpsys activity com.android.launcher3/.ImageViewerActivity perf 导出JSON
+ */
+public final class PerfMetrics {
+    // 计时指标
+    public static final String SCAN_DIRECTORY = "scan.directory";
+    public static final String SCAN_TOTAL = "scan.total";
+    public static final String BIND = "adapter.bind";
+    public static final String GLIDE_LOAD = "glide.load";
+    public static final String PAG_FIRST_FRAME = "pag.first_frame";
+    public static final String SWIPE_FRAME = "swipe.frame";
+    public static final String SLIDESHOW_PREPARE = "slideshow.prepare";
+
+    // 计数指标
+    public static final String GLIDE_SOURCE_PREFIX = "glide.source.";
+    public static final String GLIDE_FAILED = "glide.failed";
+    public static final String SWIPE_FRAMES = "swipe.frames";
+    public static final String SWIPE_DROPPED_FRAMES = "swipe.dropped_frames";
+    public static final String SLIDESHOW_LATE = "slideshow.late";
+
+    // 缓存大小（字节）
+    public static final String GLIDE_MEMORY_CACHE_MAX = "glide.memory_cache.max_bytes";
+    public static final String GLIDE_MEMORY_CACHE_SIZE = "glide.memory_cache.bytes";
+    public static final String GLIDE_BITMAP_POOL_MAX = "glide.bitmap_pool.max_bytes";
+    public static final String GLIDE_BITMAP_POOL_SIZE = "glide.bitmap_pool.bytes";
+    public static final String GLIDE_DISK_CACHE_MAX = "glide.disk_cache.max_bytes";
+
+    // 内存压力
+    public static final String MEMORY_TRIM_PREFIX = "memory.trim.";
+    public static final String MEMORY_STAGE = "memory.stage";
+    public static final String MEMORY_RECLAIMED_GLIDE = "memory.reclaimed.glide_bytes";
+    public static final String MEMORY_RECLAIMED_PAG = "memory.reclaimed.pag_bytes";
+    public static final String MEMORY_FREED_PAG_VIEWS = "memory.freed.pag_views";
+
+    private static final PerfMetrics INSTANCE = new PerfMetrics();
+
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+
+    private PerfMetrics() {
+    }
+
+    public static PerfMetrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * 计时起点，配合 {@link #recordSince} 使用
+     */
+    public static long now() {
+        return SystemClock.elapsedRealtimeNanos();
+    }
+
+    public void recordSince(String name, long startNanos) {
+        record(name, now() - startNanos);
+    }
+
+    public void record(String name, long durationNanos) {
+        Histogram histogram = histograms.get(name);
+        if (histogram == null) {
+            histogram = histograms.computeIfAbsent(name, key -> new Histogram());
+        }
+        histogram.record(durationNanos);
+    }
+
+    public void increment(String name) {
+        add(name, 1);
+    }
+
+    public void add(String name, long delta) {
+        AtomicLong counter = counters.get(name);
+        if (counter == null) {
+            counter = counters.computeIfAbsent(name, key -> new AtomicLong());
+        }
+        counter.addAndGet(delta);
+    }
+
+    /**
+     * 记录当前值（如缓存大小），覆盖之前的值
+     */
+    public void setGauge(String name, long value) {
+        AtomicLong counter = counters.get(name);
+        if (counter == null) {
+            counter = counters.computeIfAbsent(name, key -> new AtomicLong());
+        }
+        counter.set(value);
+    }
+
+    public void reset() {
+        histograms.clear();
+        counters.clear();
+    }
+
+    public JSONObject toJson() {
+        JSONObject root = new JSONObject();
+        try {
+            JSONObject timers = new JSONObject();
+            for (Map.Entry<String, Histogram> entry : new TreeMap<>(histograms).entrySet()) {
+                timers.put(entry.getKey(), entry.getValue().toJson());
+            }
+            JSONObject counts = new JSONObject();
+            for (Map.Entry<String, AtomicLong> entry : new TreeMap<>(counters).entrySet()) {
+                counts.put(entry.getKey(), entry.getValue().get());
+            }
+            root.put("timers", timers);
+            root.put("counters", counts);
+        } catch (JSONException e) {
+            // key都是非空字符串，不会发生
+        }
+        return root;
+    }
+
+    /**
+     * 以微秒为单位、按2的幂分桶的直方图，百分位按桶上界估算
+     */
+    static final class Histogram {
+        private static final int BUCKETS = 40;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sumMicros = new AtomicLong();
+        private final AtomicLong maxMicros = new AtomicLong();
+
+        void record(long durationNanos) {
+            long micros = Math.max(durationNanos / 1000, 0);
+            int bucket = micros == 0 ? 0 : Math.min(64 - Long.numberOfLeadingZeros(micros), BUCKETS - 1);
+            buckets.incrementAndGet(bucket);
+            count.incrementAndGet();
+            sumMicros.addAndGet(micros);
+
+            long max = maxMicros.get();
+            while (micros > max && !maxMicros.compareAndSet(max, micros)) {
+                max = maxMicros.get();
+            }
+        }
+
+        JSONObject toJson() throws JSONException {
+            long total = count.get();
+            JSONObject json = new JSONObject();
+            json.put("count", total);
+            json.put("mean_us", total == 0 ? 0 : sumMicros.get() / total);
+            json.put("p50_us", percentile(total, 0.50));
+            json.put("p90_us", percentile(total, 0.90));
+            json.put("p99_us", percentile(total, 0.99));
+            json.put("max_us", maxMicros.get());
+            return json;
+        }
+
+        private long percentile(long total, double fraction) {
+            if (total == 0) return 0;
+            long threshold = (long) Math.ceil(total * fraction);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets.get(i);
+                if (seen >= threshold) {
+                    return i == 0 ? 0 : 1L << i;
+                }
+            }
+            return maxMicros.get();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.android.launcher3.wallpaper;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 递归扫描的范围：最大深度，以及包含/排除的子目录
+ */
+public final class ScanRules {
+    /** 默认向下扫描4层子目录，跳过隐藏文件和系统缩略图目录 */
+    public static final ScanRules DEFAULT = new ScanRules(4,
+            Collections.<String>emptySet(), Arrays.asList(".thumbnails", ".trash"), false);
+
+    private final int maxDepth;
+    private final Set<String> includedDirectories;
+    private final Set<String> excludedDirectories;
+    private final boolean includeHidden;
+
+    /**
+     * @param maxDepth 子目录的最大深度，0表示只扫描根目录本身
+     * @param includedDirectories 非空时只进入根目录下这些名称的子目录
+     * @param excludedDirectories 任何深度下都跳过的子目录名称
+     * @param includeHidden 是否包含以.开头的文件和目录
+     */
+    public ScanRules(int maxDepth, Collection<String> includedDirectories,
+            Collection<String> excludedDirectories, boolean includeHidden) {
+        this.maxDepth = Math.max(maxDepth, 0);
+        this.includedDirectories = new HashSet<>(includedDirectories);
+        this.excludedDirectories = new HashSet<>(excludedDirectories);
+        this.includeHidden = includeHidden;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * 是否进入子目录
+     * @param depth 子目录的深度，根目录的直接子目录为1
+     */
+    public boolean acceptsDirectory(String name, int depth) {
+        if (depth > maxDepth) return false;
+        if (!includeHidden && isHidden(name)) return false;
+        if (excludedDirectories.contains(name)) return false;
+        return depth != 1 || includedDirectories.isEmpty() || includedDirectories.contains(name);
+    }
+
+    public boolean acceptsFile(String name) {
+        return includeHidden || !isHidden(name);
+    }
+
+    private static boolean isHidden(String name) {
+        return !name.isEmpty() && name.charAt(0) == '.';
+    }
+}
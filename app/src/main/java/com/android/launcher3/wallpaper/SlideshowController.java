@@ -0,0 +1,482 @@
+package com.android.launcher3.wallpaper;
+
+import android.content.Context;
+import android.content.res.AssetManager;
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.view.Choreographer;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.viewpager2.widget.ViewPager2;
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.engine.GlideException;
+import com.bumptech.glide.request.RequestListener;
+import com.bumptech.glide.request.target.Target;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 幻灯片自动翻页
+ * 计时跟随Choreographer的帧时间，只在需要准备下一页和到期时各唤醒一次，不逐帧轮询；
+ * 下一页按最近的准备耗时提前开始解码（图片进Glide内存缓存，PAG解析并生成封面），
+ * 到期时下一页还没准备好会稍等；PAG页从头播放，由PAGView自己的周期回调触发翻页，
+ * 按动画时长的计时只作为回调没有到来时的兜底
+ */
+public class SlideshowController extends ViewPager2.OnPageChangeCallback implements Choreographer.FrameCallback {
+    private static final String TAG = "SlideshowController";
+
+    public static final long DEFAULT_INTERVAL_MS = 5_000L;
+
+    private static final long NANOS_PER_MILLI = 1_000_000L;
+    // 提前准备的最短时间，覆盖翻页动画本身
+    private static final long MIN_LEAD_NANOS = 1_000L * NANOS_PER_MILLI;
+    // 到期后等待下一页准备好的最长时间，超过后直接翻页
+    private static final long MAX_WAIT_NANOS = 3_000L * NANOS_PER_MILLI;
+    // PAG动画太短时至少停留的时间
+    private static final long MIN_PAG_DWELL_NANOS = 2_000L * NANOS_PER_MILLI;
+    // PAG页的兜底计时在动画时长之外多等的时间，覆盖解析和首帧
+    private static final long PAG_LOOP_SLACK_NANOS = 3_000L * NANOS_PER_MILLI;
+
+    private final ViewPager2 viewPager;
+    private final ImagePagerAdapter adapter;
+    private final Context context;
+    private final AssetManager assets;
+    private final RequestManager requestManager;
+    private final Choreographer choreographer = Choreographer.getInstance();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService pagExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "slideshow-pag");
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+
+    private long intervalNanos = DEFAULT_INTERVAL_MS * NANOS_PER_MILLI;
+    private boolean shuffle;
+    private boolean running;
+    private boolean resumed = true;
+    private boolean dragging;
+    private boolean frameScheduled;
+
+    // 当前页及其开始显示的时间，暂停期间记录已显示的时长
+    private long currentItemId = RecyclerView.NO_ID;
+    private long currentDurationNanos;
+    private boolean currentIsPag;
+    // PAG页已经播放完一个周期
+    private boolean pagLoopCompleted;
+    private long pageStartNanos;
+    private long pausedElapsedNanos;
+
+    // 正在准备的下一页
+    private long nextItemId = RecyclerView.NO_ID;
+    private boolean nextReady;
+    private long nextDurationNanos;
+    private long prepareStartNanos;
+    private Target<Drawable> nextTarget;
+    private Future<?> nextTask;
+    // 最近几次准备耗时的平滑值，决定提前多久开始准备
+    private long averagePrepareNanos;
+
+    // 随机顺序，一轮放完后重新打乱
+    private final List<Long> shuffleOrder = new ArrayList<>();
+    private int shuffleIndex;
+
+    public SlideshowController(Context context, ViewPager2 viewPager, ImagePagerAdapter adapter) {
+        this.context = context.getApplicationContext();
+        this.assets = context.getAssets();
+        this.viewPager = viewPager;
+        this.adapter = adapter;
+        this.requestManager = Glide.with(context);
+        adapter.getPlaybackManager().setOnLoopListener(this::onLoopCompleted);
+    }
+
+    /**
+     * 开始自动翻页，从当前页开始计时
+     * @param intervalMs 图片页的停留时间
+     * @param shuffle 是否随机顺序
+     */
+    public void start(long intervalMs, boolean shuffle) {
+        this.intervalNanos = Math.max(intervalMs, 1_000L) * NANOS_PER_MILLI;
+        this.shuffle = shuffle;
+        shuffleOrder.clear();
+        shuffleIndex = 0;
+        cancelNext();
+        running = true;
+        adapter.getPlaybackManager().setRestartOnSelect(true);
+        // 展示设备上长时间播放，不让屏幕熄灭
+        viewPager.setKeepScreenOn(true);
+        onCurrentPage(viewPager.getCurrentItem(), false);
+        Log.d(TAG, "开始幻灯片: 间隔 " + intervalMs + "ms" + (shuffle ? ", 随机顺序" : ""));
+    }
+
+    public void stop() {
+        if (!running) return;
+        running = false;
+        adapter.getPlaybackManager().setRestartOnSelect(false);
+        unscheduleFrame();
+        cancelNext();
+        shuffleOrder.clear();
+        viewPager.setKeepScreenOn(false);
+        Log.d(TAG, "停止幻灯片");
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Activity恢复时调用，接着暂停前剩余的时间继续
+     */
+    public void onResume() {
+        if (resumed) return;
+        resumed = true;
+        if (running) {
+            pageStartNanos = System.nanoTime() - pausedElapsedNanos;
+            scheduleNextFrame(System.nanoTime());
+        }
+    }
+
+    /**
+     * Activity暂停时调用，停止计时和帧回调
+     */
+    public void onPause() {
+        if (!resumed) return;
+        resumed = false;
+        unscheduleFrame();
+        pausedElapsedNanos = System.nanoTime() - pageStartNanos;
+    }
+
+    /**
+     * 停止并取消所有准备，Activity销毁或Adapter替换时调用
+     */
+    public void release() {
+        stop();
+        adapter.getPlaybackManager().setOnLoopListener(null);
+        pagExecutor.shutdownNow();
+    }
+
+    @Override
+    public void onPageSelected(int position) {
+        if (!running) return;
+        onCurrentPage(position, true);
+    }
+
+    @Override
+    public void onPageScrollStateChanged(int state) {
+        dragging = state == ViewPager2.SCROLL_STATE_DRAGGING;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        frameScheduled = false;
+        if (!running || !resumed) return;
+
+        long dwell = dueNanos();
+        long elapsed = frameTimeNanos - pageStartNanos;
+        if (nextItemId == RecyclerView.NO_ID && elapsed >= prepareAtNanos()) {
+            prepareNext();
+            if (nextItemId == RecyclerView.NO_ID) {
+                // 不足两页，过一个间隔再看列表是否有变化
+                frameScheduled = true;
+                choreographer.postFrameCallbackDelayed(this, intervalNanos / NANOS_PER_MILLI);
+                return;
+            }
+        }
+
+        if (elapsed >= dwell && !dragging && nextItemId != RecyclerView.NO_ID) {
+            if (nextReady || elapsed >= dwell + MAX_WAIT_NANOS) {
+                if (!nextReady) {
+                    PerfMetrics.get().increment(PerfMetrics.SLIDESHOW_LATE);
+                }
+                advance();
+                return;
+            }
+        }
+        scheduleNextFrame(frameTimeNanos);
+    }
+
+    private void onCurrentPage(int position, boolean fromPageChange) {
+        if (position < 0 || position >= adapter.getItemCount()) return;
+
+        long itemId = adapter.getItemId(position);
+        if (fromPageChange && itemId == currentItemId) return;
+
+        ImageItem item = adapter.getItem(position);
+        currentIsPag = item.getType() == ImageItem.TYPE_PAG;
+        pagLoopCompleted = false;
+        if (currentIsPag && !fromPageChange) {
+            // 开始幻灯片时当前PAG可能已经播放到一半，从头播放一个完整周期
+            adapter.getPlaybackManager().restartSelected();
+        }
+        if (itemId == nextItemId) {
+            // 按计划翻到了准备好的页面，页面自己的请求已接手，释放预加载
+            currentDurationNanos = nextReady ? nextDurationNanos : 0;
+            cancelNext();
+        } else {
+            // 手动翻页或刚开始，重新选择下一页
+            cancelNext();
+            currentDurationNanos = 0;
+            if (currentIsPag) {
+                loadPagDuration(item);
+            }
+        }
+        currentItemId = itemId;
+        pageStartNanos = System.nanoTime();
+        pausedElapsedNanos = 0;
+        if (resumed) {
+            // 旧页面的唤醒时间已不适用
+            unscheduleFrame();
+            scheduleNextFrame(pageStartNanos);
+        }
+    }
+
+    /**
+     * 选中的PAG页播放完一个周期，由PagPlaybackManager在主线程回调
+     */
+    private void onLoopCompleted(long itemId) {
+        if (!running || itemId != currentItemId || !currentIsPag || pagLoopCompleted) return;
+        pagLoopCompleted = true;
+        if (resumed) {
+            unscheduleFrame();
+            scheduleNextFrame(System.nanoTime());
+        }
+    }
+
+    /**
+     * 预计的停留时间，用来决定何时开始准备下一页；PAG页为一个动画周期
+     */
+    private long expectedDwellNanos() {
+        if (currentIsPag && currentDurationNanos > 0) {
+            return Math.max(currentDurationNanos, MIN_PAG_DWELL_NANOS);
+        }
+        return intervalNanos;
+    }
+
+    /**
+     * 当前页到期的时间（相对开始显示）；PAG页以周期回调为准，计时只是兜底
+     */
+    private long dueNanos() {
+        if (!currentIsPag) {
+            return intervalNanos;
+        }
+        return pagLoopCompleted ? MIN_PAG_DWELL_NANOS : expectedDwellNanos() + PAG_LOOP_SLACK_NANOS;
+    }
+
+    private long prepareAtNanos() {
+        long expected = expectedDwellNanos();
+        return Math.min(expected - leadNanos(expected), dueNanos());
+    }
+
+    /**
+     * 按平均准备耗时的两倍提前，最多提前停留时间的一半
+     */
+    private long leadNanos(long dwell) {
+        return Math.min(Math.max(averagePrepareNanos * 2, MIN_LEAD_NANOS), dwell / 2);
+    }
+
+    /**
+     * 下一次需要处理的时间点：开始准备下一页、到期或等待超时，准备完成时会重新计算
+     */
+    private void scheduleNextFrame(long nowNanos) {
+        if (frameScheduled) return;
+
+        long dwell = dueNanos();
+        long elapsed = nowNanos - pageStartNanos;
+        long wakeAt;
+        if (nextItemId == RecyclerView.NO_ID) {
+            wakeAt = prepareAtNanos();
+        } else if (nextReady || dragging) {
+            wakeAt = dwell;
+        } else {
+            wakeAt = dwell + MAX_WAIT_NANOS;
+        }
+        long delayMs = Math.max((wakeAt - elapsed) / NANOS_PER_MILLI, 0L);
+        frameScheduled = true;
+        if (delayMs > 0) {
+            choreographer.postFrameCallbackDelayed(this, delayMs);
+        } else {
+            choreographer.postFrameCallback(this);
+        }
+    }
+
+    private void unscheduleFrame() {
+        choreographer.removeFrameCallback(this);
+        frameScheduled = false;
+    }
+
+    private void advance() {
+        int position = adapter.findPositionById(nextItemId);
+        if (position == RecyclerView.NO_POSITION) {
+            // 下一页在准备期间被删除，重新选择
+            cancelNext();
+            scheduleNextFrame(System.nanoTime());
+            return;
+        }
+        // 只有相邻页面才平滑滚动，随机顺序直接跳转，避免滚过中间的页面
+        boolean adjacent = Math.abs(position - viewPager.getCurrentItem()) == 1;
+        viewPager.setCurrentItem(position, adjacent);
+    }
+
+    private void prepareNext() {
+        ImageItem item = chooseNext();
+        if (item == null) return;
+
+        final long itemId = item.getStableId();
+        nextItemId = itemId;
+        nextReady = false;
+        nextDurationNanos = 0;
+        prepareStartNanos = PerfMetrics.now();
+
+        if (item.getType() == ImageItem.TYPE_PAG) {
+            preparePag(item, itemId);
+        } else if (item.getGlideSource() != null) {
+            prepareImage(item, itemId);
+        } else {
+            onNextReady(itemId, 0);
+        }
+    }
+
+    /**
+     * 顺序模式取当前页的下一页，随机模式按打乱的顺序取，跳过已删除的条目
+     */
+    @Nullable
+    private ImageItem chooseNext() {
+        List<ImageItem> items = adapter.getCurrentList();
+        if (items.size() < 2) return null;
+
+        int current = adapter.findPositionById(currentItemId);
+        if (!shuffle) {
+            return items.get((Math.max(current, 0) + 1) % items.size());
+        }
+
+        for (int round = 0; round < 2; round++) {
+            while (shuffleIndex < shuffleOrder.size()) {
+                long id = shuffleOrder.get(shuffleIndex++);
+                int position = adapter.findPositionById(id);
+                if (position != RecyclerView.NO_POSITION && id != currentItemId) {
+                    return items.get(position);
+                }
+            }
+            shuffleOrder.clear();
+            for (ImageItem item : items) {
+                shuffleOrder.add(item.getStableId());
+            }
+            Collections.shuffle(shuffleOrder);
+            shuffleIndex = 0;
+        }
+        return null;
+    }
+
+    private void prepareImage(ImageItem item, long itemId) {
+        // 模型和选项和页面绑定时一致，翻到时直接命中内存缓存
+        nextTarget = requestManager
+                .load(item)
+                .apply(adapter.getDecodeConfig().optionsFor(item))
+                .listener(new RequestListener<Drawable>() {
+                    @Override
+                    public boolean onLoadFailed(@Nullable GlideException e, Object model,
+                                                @NonNull Target<Drawable> target, boolean isFirstResource) {
+                        // 解码失败的页面不再等待，翻到时显示错误图
+                        onNextReady(itemId, 0);
+                        return false;
+                    }
+
+                    @Override
+                    public boolean onResourceReady(@NonNull Drawable resource, @NonNull Object model,
+                                                   Target<Drawable> target, @NonNull DataSource dataSource,
+                                                   boolean isFirstResource) {
+                        onNextReady(itemId, 0);
+                        return false;
+                    }
+                })
+                .preload();
+    }
+
+    private void preparePag(ImageItem item, long itemId) {
+        final String filePath = item.getFilePath();
+        final long lastModified = item.getLastModified();
+        // 封面在首帧渲染出来前显示，提前生成
+        DecodeConfig config = adapter.getDecodeConfig();
+        if (item.isAsset()) {
+            PagPosterCache.getInstance(context).requestAssetPoster(context.getAssets(), item.getAssetPath(), 0,
+                    config.getTargetWidth() / 2, config.getTargetHeight() / 2, posterFile -> { });
+        } else if (item.isFromSDCard() && filePath != null) {
+            PagPosterCache.getInstance(context).requestPoster(filePath, lastModified, 0,
+                    config.getTargetWidth() / 2, config.getTargetHeight() / 2, posterFile -> { });
+        }
+        nextTask = pagExecutor.submit(() -> {
+            long durationNanos = readPagDuration(item);
+            mainHandler.post(() -> onNextReady(itemId, durationNanos));
+        });
+    }
+
+    private void onNextReady(long itemId, long durationNanos) {
+        if (itemId != nextItemId || nextReady) return;
+        nextReady = true;
+        nextDurationNanos = durationNanos;
+
+        long prepareNanos = PerfMetrics.now() - prepareStartNanos;
+        PerfMetrics.get().record(PerfMetrics.SLIDESHOW_PREPARE, prepareNanos);
+        averagePrepareNanos = averagePrepareNanos == 0
+                ? prepareNanos : (averagePrepareNanos * 3 + prepareNanos) / 4;
+        if (running && resumed) {
+            // 已经到期在等待时立即翻页
+            unscheduleFrame();
+            scheduleNextFrame(System.nanoTime());
+        }
+    }
+
+    /**
+     * 开始时或手动翻到PAG页时，后台读取动画时长
+     */
+    private void loadPagDuration(ImageItem item) {
+        final long itemId = item.getStableId();
+        pagExecutor.submit(() -> {
+            long durationNanos = readPagDuration(item);
+            mainHandler.post(() -> {
+                if (running && itemId == currentItemId) {
+                    currentDurationNanos = durationNanos;
+                    unscheduleFrame();
+                    scheduleNextFrame(System.nanoTime());
+                }
+            });
+        });
+    }
+
+    /**
+     * 在后台线程解析PAG（结果进入共享缓存，页面绑定时直接复用），返回一个周期的时长，失败返回0
+     */
+    private long readPagDuration(ImageItem item) {
+        long durationMicros;
+        if (item.isAsset()) {
+            durationMicros = PagFileCache.getInstance().assetDurationOf(assets, item.getAssetPath());
+        } else if (item.getFilePath() != null) {
+            durationMicros = PagFileCache.getInstance().durationOf(item.getFilePath(), item.getLastModified());
+        } else {
+            durationMicros = 0;
+        }
+        return durationMicros * 1_000L;
+    }
+
+    private void cancelNext() {
+        if (nextTarget != null) {
+            requestManager.clear(nextTarget);
+            nextTarget = null;
+        }
+        if (nextTask != null) {
+            nextTask.cancel(true);
+            nextTask = null;
+        }
+        nextItemId = RecyclerView.NO_ID;
+        nextReady = false;
+        nextDurationNanos = 0;
+    }
+}
@@ -0,0 +1,67 @@
+package com.android.launcher3.wallpaper;
+
+import android.app.Activity;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.view.Display;
+import android.view.FrameMetrics;
+import android.view.Window;
+import androidx.viewpager2.widget.ViewPager2;
+
+/**
+ * 统计翻页过程中的帧耗时和掉帧数，只在ViewPager2拖动或惯性滑动时记录
+ */
+public class SwipeFrameMonitor extends ViewPager2.OnPageChangeCallback {
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final Window window;
+    private final long frameIntervalNanos;
+    private final PerfMetrics metrics = PerfMetrics.get();
+    private HandlerThread thread;
+    private volatile boolean swiping;
+    private final Window.OnFrameMetricsAvailableListener listener = this::onFrameMetrics;
+
+    public SwipeFrameMonitor(Activity activity) {
+        this.window = activity.getWindow();
+        Display display = activity.getDisplay();
+        float refreshRate = display != null ? display.getRefreshRate() : 60f;
+        this.frameIntervalNanos = (long) (NANOS_PER_SECOND / Math.max(refreshRate, 1f));
+    }
+
+    private void onFrameMetrics(Window targetWindow, FrameMetrics frameMetrics, int dropCountSinceLastInvocation) {
+        if (!swiping) return;
+        long totalNanos = frameMetrics.getMetric(FrameMetrics.TOTAL_DURATION);
+        metrics.record(PerfMetrics.SWIPE_FRAME, totalNanos);
+        metrics.increment(PerfMetrics.SWIPE_FRAMES);
+        // 超出一个刷新周期的部分按整帧计为掉帧
+        if (totalNanos > frameIntervalNanos) {
+            metrics.add(PerfMetrics.SWIPE_DROPPED_FRAMES, (totalNanos - 1) / frameIntervalNanos);
+        }
+    }
+
+    @Override
+    public void onPageScrollStateChanged(int state) {
+        swiping = state != ViewPager2.SCROLL_STATE_IDLE;
+    }
+
+    /**
+     * 开始接收帧数据，在onResume中调用
+     */
+    public void start() {
+        if (thread != null) return;
+        thread = new HandlerThread("swipe-frame-monitor");
+        thread.start();
+        window.addOnFrameMetricsAvailableListener(listener, new Handler(thread.getLooper()));
+    }
+
+    /**
+     * 停止接收帧数据，在onPause中调用
+     */
+    public void stop() {
+        if (thread == null) return;
+        window.removeOnFrameMetricsAvailableListener(listener);
+        thread.quitSafely();
+        thread = null;
+        swiping = false;
+    }
+}
@@ -0,0 +1,389 @@
+package com.android.launcher3.wallpaper;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.net.Uri;
+import android.util.AttributeSet;
+import android.util.Log;
+import android.util.LruCache;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
+import android.view.View;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 可缩放、拖动的大图页面
+ * 整图先按页面尺寸采样解码为低分辨率底图，放大后只解码可见区域的分块，
+ * 分块按采样级别缓存在LRU中，离开可见区域的分块会被移除，内存占用只和页面尺寸有关
+ */
+public class TiledImageView extends View {
+    private static final String TAG = "TiledImageView";
+
+    // 分块解码后的边长（像素）
+    private static final int TILE_SIZE = 512;
+    // 最多放大到原图1:1的倍数
+    private static final float MAX_ZOOM_OVER_NATIVE = 2f;
+
+    // 所有页面共用一个解码线程，避免翻页时多个页面同时占满CPU
+    private static final ExecutorService DECODER = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "tile-decoder");
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+
+    public interface OnTapListener {
+        void onSingleTap();
+        /** 缩放回到适应页面后再次双击，退出缩放模式 */
+        void onExitRequested();
+    }
+
+    private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Rect tileRegion = new Rect();
+    private final RectF tileDestination = new RectF();
+    private final ScaleGestureDetector scaleDetector;
+    private final GestureDetector gestureDetector;
+    private final Set<Long> pendingTiles = new HashSet<>();
+
+    private LruCache<Long, Bitmap> tileCache;
+    private BitmapRegionDecoder decoder;
+    private Bitmap baseLayer;
+    private OnTapListener tapListener;
+    private Bitmap.Config tileConfig = Bitmap.Config.ARGB_8888;
+    // 每次setImage/recycle递增，丢弃旧图片的解码结果
+    private int generation;
+    private int imageWidth;
+    private int imageHeight;
+    private float minScale;
+    private float scale;
+    private float translateX;
+    private float translateY;
+
+    public TiledImageView(Context context) {
+        this(context, null);
+    }
+
+    public TiledImageView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        scaleDetector = new ScaleGestureDetector(context, new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+            @Override
+            public boolean onScale(ScaleGestureDetector detector) {
+                zoomBy(detector.getScaleFactor(), detector.getFocusX(), detector.getFocusY());
+                return true;
+            }
+        });
+        gestureDetector = new GestureDetector(context, new GestureDetector.SimpleOnGestureListener() {
+            @Override
+            public boolean onDown(MotionEvent e) {
+                return true;
+            }
+
+            @Override
+            public boolean onScroll(MotionEvent e1, MotionEvent e2, float distanceX, float distanceY) {
+                translateX -= distanceX;
+                translateY -= distanceY;
+                onTransformChanged();
+                return true;
+            }
+
+            @Override
+            public boolean onSingleTapConfirmed(MotionEvent e) {
+                if (tapListener != null) tapListener.onSingleTap();
+                return true;
+            }
+
+            @Override
+            public boolean onDoubleTap(MotionEvent e) {
+                if (scale > minScale * 1.01f) {
+                    scale = minScale;
+                    onTransformChanged();
+                } else if (tapListener != null) {
+                    tapListener.onExitRequested();
+                }
+                return true;
+            }
+        });
+    }
+
+    public void setOnTapListener(OnTapListener listener) {
+        this.tapListener = listener;
+    }
+
+    /**
+     * 打开图片（File或content URI），底图和分块都在后台解码
+     * @param opaque 没有透明通道的格式（如JPEG）用RGB_565解码分块
+     */
+    public void setImage(ContentResolver resolver, Object source, boolean opaque) {
+        recycle();
+        final int requestGeneration = generation;
+        // 刚从GONE切换为可见时还没有布局，按父容器尺寸计算（两者都是match_parent）
+        View parent = (View) getParent();
+        final int viewWidth = getWidth() > 0 ? getWidth() : parent.getWidth();
+        final int viewHeight = getHeight() > 0 ? getHeight() : parent.getHeight();
+        tileConfig = opaque ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888;
+
+        // 不可见的分块在每次变换时移除，缓存只需容纳同时可见的分块，
+        // 容量不足时会淘汰正在显示的分块，onDraw又重新请求，解码永远停不下来
+        int bytesPerPixel = opaque ? 2 : 4;
+        int maxBytes = maxVisibleTiles(viewWidth, viewHeight) * TILE_SIZE * TILE_SIZE * bytesPerPixel;
+        tileCache = new LruCache<Long, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(Long key, Bitmap value) {
+                return value.getAllocationByteCount();
+            }
+        };
+
+        DECODER.execute(() -> {
+            BitmapRegionDecoder newDecoder = openDecoder(resolver, source);
+            if (newDecoder == null) return;
+
+            int width = newDecoder.getWidth();
+            int height = newDecoder.getHeight();
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inSampleSize = sampleSizeFor(Math.min(
+                    (float) viewWidth / width, (float) viewHeight / height));
+            options.inPreferredConfig = tileConfig;
+            Bitmap base = newDecoder.decodeRegion(new Rect(0, 0, width, height), options);
+
+            post(() -> {
+                if (requestGeneration != generation) {
+                    newDecoder.recycle();
+                    return;
+                }
+                decoder = newDecoder;
+                baseLayer = base;
+                imageWidth = width;
+                imageHeight = height;
+                resetScale();
+            });
+        });
+    }
+
+    /**
+     * 释放解码器和所有位图，页面重新绑定或回收时调用
+     */
+    public void recycle() {
+        generation++;
+        pendingTiles.clear();
+        if (tileCache != null) {
+            tileCache.evictAll();
+        }
+        if (decoder != null) {
+            final BitmapRegionDecoder oldDecoder = decoder;
+            // 可能有分块正在解码，放到解码线程上释放
+            DECODER.execute(oldDecoder::recycle);
+            decoder = null;
+        }
+        baseLayer = null;
+        imageWidth = 0;
+        imageHeight = 0;
+        scale = 0f;
+        invalidate();
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        // 放大后或双指缩放时自己处理拖动，不让ViewPager2翻页
+        boolean zoomed = scale > minScale * 1.01f;
+        if (zoomed || event.getPointerCount() > 1) {
+            getParent().requestDisallowInterceptTouchEvent(true);
+        }
+        scaleDetector.onTouchEvent(event);
+        gestureDetector.onTouchEvent(event);
+        return true;
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        if (imageWidth > 0) {
+            resetScale();
+        }
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        if (baseLayer == null || scale <= 0f) return;
+
+        tileDestination.set(translateX, translateY,
+                translateX + imageWidth * scale, translateY + imageHeight * scale);
+        canvas.drawBitmap(baseLayer, null, tileDestination, paint);
+
+        int sampleSize = sampleSizeFor(scale);
+        int tileExtent = TILE_SIZE * sampleSize;
+        if (sampleSizeFor(minScale) == sampleSize) {
+            // 底图已经是当前缩放级别的分辨率
+            return;
+        }
+
+        int firstColumn = Math.max((int) (-translateX / scale) / tileExtent, 0);
+        int firstRow = Math.max((int) (-translateY / scale) / tileExtent, 0);
+        int lastColumn = Math.min((int) ((getWidth() - translateX) / scale) / tileExtent,
+                (imageWidth - 1) / tileExtent);
+        int lastRow = Math.min((int) ((getHeight() - translateY) / scale) / tileExtent,
+                (imageHeight - 1) / tileExtent);
+
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                long key = tileKey(sampleSize, row, column);
+                Bitmap tile = tileCache.get(key);
+                if (tile == null) {
+                    requestTile(key, sampleSize, row, column);
+                    continue;
+                }
+                int left = column * tileExtent;
+                int top = row * tileExtent;
+                tileDestination.set(translateX + left * scale, translateY + top * scale,
+                        translateX + Math.min(left + tileExtent, imageWidth) * scale,
+                        translateY + Math.min(top + tileExtent, imageHeight) * scale);
+                canvas.drawBitmap(tile, null, tileDestination, paint);
+            }
+        }
+    }
+
+    private void requestTile(final long key, final int sampleSize, int row, int column) {
+        if (decoder == null || !pendingTiles.add(key)) return;
+
+        final BitmapRegionDecoder regionDecoder = decoder;
+        final int requestGeneration = generation;
+        final Rect region = new Rect(column * TILE_SIZE * sampleSize, row * TILE_SIZE * sampleSize,
+                Math.min((column + 1) * TILE_SIZE * sampleSize, imageWidth),
+                Math.min((row + 1) * TILE_SIZE * sampleSize, imageHeight));
+        DECODER.execute(() -> {
+            // 排队期间已经滑出可见区域或换了图片的分块不再解码
+            if (requestGeneration != generation || !isTileVisible(key) || regionDecoder.isRecycled()) {
+                post(() -> {
+                    if (requestGeneration == generation) pendingTiles.remove(key);
+                });
+                return;
+            }
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inSampleSize = sampleSize;
+            options.inPreferredConfig = tileConfig;
+            Bitmap tile = regionDecoder.decodeRegion(region, options);
+            post(() -> {
+                if (requestGeneration != generation) return;
+                pendingTiles.remove(key);
+                // 解码期间已经滑出可见区域的分块不放入缓存，以免挤掉可见的分块
+                if (tile != null && isTileVisible(key)) {
+                    tileCache.put(key, tile);
+                    invalidate();
+                }
+            });
+        });
+    }
+
+    private void zoomBy(float factor, float focusX, float focusY) {
+        float maxScale = Math.max(minScale, MAX_ZOOM_OVER_NATIVE);
+        float newScale = Math.max(minScale, Math.min(scale * factor, maxScale));
+        float applied = newScale / scale;
+        translateX = focusX - (focusX - translateX) * applied;
+        translateY = focusY - (focusY - translateY) * applied;
+        scale = newScale;
+        onTransformChanged();
+    }
+
+    private void resetScale() {
+        if (getWidth() == 0 || getHeight() == 0 || imageWidth == 0) return;
+        minScale = Math.min((float) getWidth() / imageWidth, (float) getHeight() / imageHeight);
+        scale = minScale;
+        onTransformChanged();
+    }
+
+    private void onTransformChanged() {
+        // 图片小于页面时居中，大于页面时不能拖出边界
+        float scaledWidth = imageWidth * scale;
+        float scaledHeight = imageHeight * scale;
+        translateX = scaledWidth <= getWidth()
+                ? (getWidth() - scaledWidth) / 2f
+                : Math.min(0f, Math.max(translateX, getWidth() - scaledWidth));
+        translateY = scaledHeight <= getHeight()
+                ? (getHeight() - scaledHeight) / 2f
+                : Math.min(0f, Math.max(translateY, getHeight() - scaledHeight));
+        evictInvisibleTiles();
+        invalidate();
+    }
+
+    private void evictInvisibleTiles() {
+        if (tileCache == null) return;
+        for (Long key : tileCache.snapshot().keySet()) {
+            if (!isTileVisible(key)) {
+                tileCache.remove(key);
+            }
+        }
+    }
+
+    /**
+     * 分块是否属于当前缩放级别且在可见区域内，可以在解码线程调用（读取的字段只是近似值）
+     */
+    private boolean isTileVisible(long key) {
+        float currentScale = scale;
+        if (currentScale <= 0f) return false;
+        int sampleSize = (int) (key >>> 48);
+        if (sampleSize != sampleSizeFor(currentScale)) return false;
+
+        int row = (int) ((key >>> 24) & 0xFFFFFF);
+        int column = (int) (key & 0xFFFFFF);
+        float extent = TILE_SIZE * sampleSize * currentScale;
+        float left = translateX + column * extent;
+        float top = translateY + row * extent;
+        return left < getWidth() && left + extent > 0 && top < getHeight() && top + extent > 0;
+    }
+
+    /**
+     * 任意缩放比例下同时可见的最多分块数
+     * 采样率s只在比例大于1/(2s)时使用（s为1时比例大于0.5），此时每个分块在屏幕上至少占TILE_SIZE/2像素，
+     * 每个方向最多ceil(页面/(TILE_SIZE/2))个，加上两端各露出一部分的一个
+     */
+    private static int maxVisibleTiles(int viewWidth, int viewHeight) {
+        int minExtent = TILE_SIZE / 2;
+        int columns = (Math.max(viewWidth, 1) + minExtent - 1) / minExtent + 1;
+        int rows = (Math.max(viewHeight, 1) + minExtent - 1) / minExtent + 1;
+        return columns * rows;
+    }
+
+    private static long tileKey(int sampleSize, int row, int column) {
+        return ((long) sampleSize << 48) | ((long) row << 24) | column;
+    }
+
+    /**
+     * 显示比例对应的采样率：不超过1/scale的最大2的幂，解码结果不低于屏幕分辨率
+     */
+    private static int sampleSizeFor(float scale) {
+        if (scale >= 1f) return 1;
+        return Math.max(Integer.highestOneBit((int) (1f / scale)), 1);
+    }
+
+    @SuppressWarnings("deprecation")
+    private static BitmapRegionDecoder openDecoder(ContentResolver resolver, Object source) {
+        try {
+            if (source instanceof Uri) {
+                try (InputStream in = resolver.openInputStream((Uri) source)) {
+                    return in != null ? BitmapRegionDecoder.newInstance(in, false) : null;
+                }
+            }
+            return BitmapRegionDecoder.newInstance(String.valueOf(source), false);
+        } catch (IOException | SecurityException e) {
+            Log.e(TAG, "无法打开分块解码器: " + source + ", 错误: " + e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        recycle();
+    }
+}
@@ -0,0 +1,186 @@
+package com.android.launcher3.wallpaper;
+
+import android.app.WallpaperManager;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.WindowManager;
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.load.DecodeFormat;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.bumptech.glide.request.FutureTarget;
+import com.bumptech.glide.request.RequestOptions;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 把当前图片设为系统壁纸
+ * 在后台线程由Glide按壁纸尺寸边读边采样解码并居中裁剪，不解码原图全分辨率；
+ * 裁剪结果编码到缓存文件后以流的形式交给WallpaperManager，主屏幕和锁屏可以分别设置
+ */
+public class WallpaperApplier {
+    private static final String TAG = "WallpaperApplier";
+
+    private static final String TEMP_FILE_NAME = "wallpaper_apply.jpg";
+    private static final int JPEG_QUALITY = 95;
+
+    // 各阶段完成时的进度（百分比）
+    private static final int PROGRESS_DECODED = 40;
+    private static final int PROGRESS_ENCODED = 70;
+    private static final int PROGRESS_DONE = 100;
+
+    public interface Callback {
+        /** 主线程回调，进度0-100 */
+        void onProgress(int percent);
+
+        /** 主线程回调，成功或失败（被取消时不会回调） */
+        void onComplete(boolean success, String message);
+    }
+
+    /**
+     * 一次设置操作，可以在完成前取消
+     */
+    public final class Task {
+        private volatile boolean cancelled;
+        private volatile FutureTarget<Bitmap> decodeTarget;
+        private Future<?> future;
+
+        /**
+         * 取消设置；已经交给WallpaperManager的写入无法中断，会在写完后停止
+         */
+        public void cancel() {
+            cancelled = true;
+            FutureTarget<Bitmap> target = decodeTarget;
+            if (target != null) {
+                target.cancel(true);
+            }
+            if (future != null) {
+                future.cancel(true);
+            }
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    private final Context context;
+    private final WallpaperManager wallpaperManager;
+    private final RequestManager requestManager;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "wallpaper-applier");
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    public WallpaperApplier(Context context) {
+        this.context = context.getApplicationContext();
+        this.wallpaperManager = WallpaperManager.getInstance(this.context);
+        this.requestManager = Glide.with(this.context);
+    }
+
+    public static boolean canApply(ImageItem item) {
+        // PAG动画没有可以直接解码的位图
+        return item.getType() != ImageItem.TYPE_PAG && item.getGlideSource() != null;
+    }
+
+    /**
+     * 在后台裁剪并设置壁纸
+     * @param which WallpaperManager.FLAG_SYSTEM和/或FLAG_LOCK
+     */
+    public Task apply(ImageItem item, int which, Callback callback) {
+        final Task task = new Task();
+        task.future = executor.submit(() -> run(item, which, task, callback));
+        return task;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void run(ImageItem item, int which, Task task, Callback callback) {
+        long start = SystemClock.elapsedRealtime();
+        Rect size = getWallpaperSize();
+        File tempFile = new File(context.getCacheDir(), TEMP_FILE_NAME);
+        Bitmap bitmap = null;
+        try {
+            // 按壁纸尺寸采样解码并居中裁剪，一次性结果不写入缓存，避免挤掉浏览中的图片
+            RequestOptions options = new RequestOptions()
+                    .override(size.width(), size.height())
+                    .centerCrop()
+                    .format(DecodeFormat.PREFER_ARGB_8888)
+                    .diskCacheStrategy(DiskCacheStrategy.NONE)
+                    .skipMemoryCache(true);
+            task.decodeTarget = requestManager.asBitmap().load(item).apply(options).submit();
+            if (task.isCancelled()) return;
+            bitmap = task.decodeTarget.get();
+            if (task.isCancelled()) return;
+            postProgress(task, callback, PROGRESS_DECODED);
+
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(tempFile), 64 * 1024)) {
+                bitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out);
+            }
+            if (task.isCancelled()) return;
+            postProgress(task, callback, PROGRESS_ENCODED);
+
+            try (InputStream in = new FileInputStream(tempFile)) {
+                wallpaperManager.setStream(in, null, true, which);
+            }
+            long elapsedMs = SystemClock.elapsedRealtime() - start;
+            Log.d(TAG, "设置壁纸完成: " + item.getTitle() + ", 尺寸: " + size.width() + "x" + size.height()
+                    + ", 耗时: " + elapsedMs + "ms");
+            postProgress(task, callback, PROGRESS_DONE);
+            postComplete(task, callback, true, "壁纸已设置");
+        } catch (CancellationException | InterruptedException e) {
+            Log.d(TAG, "设置壁纸已取消: " + item.getTitle());
+        } catch (ExecutionException | IOException | SecurityException e) {
+            Log.e(TAG, "设置壁纸失败: " + item.getTitle() + ", 错误: " + e.getMessage());
+            postComplete(task, callback, false, "设置壁纸失败");
+        } finally {
+            if (task.decodeTarget != null) {
+                // 交还位图给Glide的BitmapPool
+                requestManager.clear(task.decodeTarget);
+            }
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * 壁纸的目标尺寸，桌面没有指定时使用屏幕的最大尺寸
+     */
+    private Rect getWallpaperSize() {
+        Rect bounds = context.getSystemService(WindowManager.class)
+                .getMaximumWindowMetrics().getBounds();
+        int width = wallpaperManager.getDesiredMinimumWidth();
+        int height = wallpaperManager.getDesiredMinimumHeight();
+        return new Rect(0, 0, width > 0 ? width : bounds.width(), height > 0 ? height : bounds.height());
+    }
+
+    private void postProgress(Task task, Callback callback, int percent) {
+        mainHandler.post(() -> {
+            if (!task.isCancelled()) callback.onProgress(percent);
+        });
+    }
+
+    private void postComplete(Task task, Callback callback, boolean success, String message) {
+        mainHandler.post(() -> {
+            if (!task.isCancelled()) callback.onComplete(success, message);
+        });
+    }
+}
@@ -0,0 +1,236 @@
+package com.android.launcher3.wallpaper;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.provider.MediaStore;
+import android.util.Log;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 壁纸删除队列
+ * 待删除的条目先从页面中移除并保留一段撤销时间，确认后才在后台线程分批删除文件，
+ * 删除后同时清理PAG解析缓存和PAG封面；Glide缓存键包含路径、大小和修改时间，不会再被命中，
+ * 持有这些条目的预加载请求由调用方在onBatchDeleted中释放
+ */
+public class WallpaperDeleter {
+    private static final String TAG = "WallpaperDeleter";
+
+    // 每批删除的文件数，每批结束回调一次主线程
+    private static final int BATCH_SIZE = 32;
+
+    private static final int RESULT_DELETED = 0;
+    private static final int RESULT_FAILED = 1;
+    private static final int RESULT_NEEDS_CONSENT = 2;
+
+    public interface Callback {
+        /** 主线程回调，一批文件删除结束 */
+        void onBatchDeleted(List<ImageItem> deleted);
+
+        /**
+         * 主线程回调，没有权限直接删除的文件（其它应用创建的媒体文件），
+         * 需要用uris调用MediaStore.createDeleteRequest由用户确认
+         */
+        void onConsentRequired(List<ImageItem> items, List<Uri> uris);
+
+        /** 主线程回调，整个队列处理完成 */
+        void onComplete(int deletedCount, int failedCount, long elapsedMs);
+    }
+
+    private final Context context;
+    private final ContentResolver resolver;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "wallpaper-deleter");
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // 撤销期内的条目，稳定ID用于在重新扫描的结果中过滤
+    private final List<ImageItem> pending = new ArrayList<>();
+    private final Set<Long> pendingIds = new HashSet<>();
+    // 已提交但后台还没删完的条目
+    private final Set<Long> deletingIds = new HashSet<>();
+
+    public WallpaperDeleter(Context context) {
+        this.context = context.getApplicationContext();
+        this.resolver = context.getContentResolver();
+    }
+
+    /**
+     * 加入待删除队列，调用方负责先从页面中移除，撤销时再放回
+     */
+    public void enqueue(Collection<ImageItem> items) {
+        for (ImageItem item : items) {
+            if (pendingIds.add(item.getStableId())) {
+                pending.add(item);
+            }
+        }
+    }
+
+    /**
+     * 撤销队列中的所有条目
+     * @return 被撤销的条目
+     */
+    public List<ImageItem> undo() {
+        List<ImageItem> restored = new ArrayList<>(pending);
+        pending.clear();
+        pendingIds.clear();
+        return restored;
+    }
+
+    public boolean hasPending() {
+        return !pending.isEmpty();
+    }
+
+    /**
+     * 是否在撤销期内或正在删除，重新扫描时这些条目不应回到页面中
+     */
+    public boolean isDeleting(long stableId) {
+        return pendingIds.contains(stableId) || deletingIds.contains(stableId);
+    }
+
+    /**
+     * 撤销期结束，在后台删除队列中的文件
+     */
+    public void commit(Callback callback) {
+        if (pending.isEmpty()) return;
+
+        final List<ImageItem> items = new ArrayList<>(pending);
+        pending.clear();
+        pendingIds.clear();
+        for (ImageItem item : items) {
+            deletingIds.add(item.getStableId());
+        }
+
+        executor.execute(() -> {
+            long start = SystemClock.elapsedRealtime();
+            List<ImageItem> consentRequired = new ArrayList<>();
+            List<Uri> consentUris = new ArrayList<>();
+            int deletedCount = 0;
+            int failedCount = 0;
+
+            for (int from = 0; from < items.size(); from += BATCH_SIZE) {
+                List<ImageItem> batch = items.subList(from, Math.min(from + BATCH_SIZE, items.size()));
+                List<ImageItem> deleted = new ArrayList<>(batch.size());
+                for (ImageItem item : batch) {
+                    int result = deleteOne(item, consentUris);
+                    if (result == RESULT_DELETED) {
+                        invalidateCaches(item);
+                        deleted.add(item);
+                    } else if (result == RESULT_NEEDS_CONSENT) {
+                        consentRequired.add(item);
+                    } else {
+                        failedCount++;
+                    }
+                }
+                deletedCount += deleted.size();
+                mainHandler.post(() -> {
+                    for (ImageItem item : batch) {
+                        deletingIds.remove(item.getStableId());
+                    }
+                    callback.onBatchDeleted(deleted);
+                });
+            }
+
+            final int totalDeleted = deletedCount;
+            final int totalFailed = failedCount;
+            final long elapsedMs = SystemClock.elapsedRealtime() - start;
+            Log.d(TAG, "删除完成: " + totalDeleted + " 个，失败: " + totalFailed
+                    + " 个，需要确认: " + consentRequired.size() + " 个，耗时: " + elapsedMs + "ms");
+            mainHandler.post(() -> {
+                if (!consentRequired.isEmpty()) {
+                    callback.onConsentRequired(consentRequired, consentUris);
+                }
+                callback.onComplete(totalDeleted, totalFailed, elapsedMs);
+            });
+        });
+    }
+
+    /**
+     * 用户在系统对话框中确认删除后调用，文件已由系统删除，只需清理缓存
+     */
+    public void onConsentGranted(List<ImageItem> items) {
+        executor.execute(() -> {
+            for (ImageItem item : items) {
+                invalidateCaches(item);
+            }
+        });
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * @param consentUris 需要用户确认时，对应的MediaStore URI加入其中
+     */
+    private int deleteOne(ImageItem item, List<Uri> consentUris) {
+        if (item.isFromLocal()) {
+            // 内置资源无法删除，只从本次浏览的列表中移除
+            return RESULT_DELETED;
+        }
+        try {
+            if (item.hasUri()) {
+                // MediaStore条目通过系统删除，索引和文件一起移除
+                return resolver.delete(item.getFileUri(), null, null) > 0 ? RESULT_DELETED : RESULT_FAILED;
+            }
+            File file = item.getFile();
+            if (file != null && (file.delete() || !file.exists())) {
+                return RESULT_DELETED;
+            }
+            // 分区存储下不能直接删除其它应用的文件，找到它的MediaStore条目交给用户确认
+            Uri uri = file != null ? findMediaUri(file.getPath()) : null;
+            if (uri != null) {
+                consentUris.add(uri);
+                return RESULT_NEEDS_CONSENT;
+            }
+            Log.w(TAG, "删除失败: " + item.getFilePath());
+            return RESULT_FAILED;
+        } catch (SecurityException e) {
+            // 其它应用创建的MediaStore文件需要用户确认
+            if (item.hasUri()) {
+                consentUris.add(item.getFileUri());
+                return RESULT_NEEDS_CONSENT;
+            }
+            return RESULT_FAILED;
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private Uri findMediaUri(String path) {
+        Uri collection = MediaStore.Files.getContentUri(MediaStore.VOLUME_EXTERNAL);
+        try (Cursor cursor = resolver.query(collection,
+                new String[] {MediaStore.Files.FileColumns._ID},
+                MediaStore.Files.FileColumns.DATA + " = ?", new String[] {path}, null)) {
+            if (cursor != null && cursor.moveToFirst()) {
+                return ContentUris.withAppendedId(collection, cursor.getLong(0));
+            }
+        } catch (SecurityException e) {
+            Log.w(TAG, "无法查询MediaStore: " + path);
+        }
+        return null;
+    }
+
+    private void invalidateCaches(ImageItem item) {
+        if (item.isFromLocal() || item.getType() != ImageItem.TYPE_PAG) {
+            // Glide的磁盘缓存键包含路径、大小和修改时间，不会再被命中，由LRU淘汰
+            return;
+        }
+        String filePath = item.getFilePath();
+        PagFileCache.getInstance().invalidate(filePath);
+        PagPosterCache.getInstance(context).invalidate(filePath, item.getLastModified());
+    }
+}
@@ -0,0 +1,142 @@
+package com.android.launcher3.wallpaper;
+
+import android.os.FileObserver;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 监听壁纸目录及扫描到的子目录的文件变化，短时间内的多次变化合并成一次回调
+ */
+public class WallpaperDirectoryWatcher {
+    private static final String TAG = "WallpaperDirWatcher";
+
+    private static final int EVENTS = FileObserver.CREATE
+            | FileObserver.DELETE
+            | FileObserver.MOVED_FROM
+            | FileObserver.MOVED_TO
+            | FileObserver.CLOSE_WRITE
+            | FileObserver.DELETE_SELF
+            | FileObserver.MOVE_SELF;
+
+    // 拷贝大量文件时会连续触发事件，合并窗口内的事件只回调一次
+    private static final long DEBOUNCE_MS = 300;
+    // inotify的IN_ISDIR标记，事件针对的是子目录
+    private static final int IS_DIRECTORY = 0x40000000;
+
+    public interface Listener {
+        /** 主线程回调，发生变化的目录（规范路径） */
+        void onDirectoriesChanged(Set<String> directories);
+    }
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Map<String, FileObserver> observers = new HashMap<>();
+    private final Set<String> rootDirectories = new HashSet<>();
+    private final Set<String> changedDirectories = new LinkedHashSet<>();
+    private final Listener listener;
+    private boolean watching;
+
+    private final Runnable dispatchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            Set<String> changed;
+            synchronized (changedDirectories) {
+                changed = new LinkedHashSet<>(changedDirectories);
+                changedDirectories.clear();
+            }
+            if (watching && !changed.isEmpty()) {
+                Log.d(TAG, "目录变化: " + changed);
+                listener.onDirectoriesChanged(changed);
+            }
+        }
+    };
+
+    public WallpaperDirectoryWatcher(String[] directories, Listener listener) {
+        this.listener = listener;
+
+        for (String directory : directories) {
+            File file = new File(directory);
+            String canonicalPath;
+            try {
+                canonicalPath = file.getCanonicalPath();
+            } catch (IOException | SecurityException e) {
+                canonicalPath = file.getAbsolutePath();
+            }
+            if (rootDirectories.add(canonicalPath)) {
+                observers.put(canonicalPath, createObserver(canonicalPath));
+            }
+        }
+    }
+
+    /**
+     * 按最新的扫描结果调整监听的子目录，根目录始终保持监听
+     * @param directories 扫描访问过的目录（规范路径）
+     */
+    public void updateDirectories(Collection<String> directories) {
+        Iterator<Map.Entry<String, FileObserver>> iterator = observers.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, FileObserver> entry = iterator.next();
+            if (!rootDirectories.contains(entry.getKey()) && !directories.contains(entry.getKey())) {
+                entry.getValue().stopWatching();
+                iterator.remove();
+            }
+        }
+        for (String directory : directories) {
+            if (!observers.containsKey(directory)) {
+                FileObserver observer = createObserver(directory);
+                observers.put(directory, observer);
+                if (watching) {
+                    observer.startWatching();
+                }
+            }
+        }
+    }
+
+    public void startWatching() {
+        if (watching) return;
+        watching = true;
+        for (FileObserver observer : observers.values()) {
+            observer.startWatching();
+        }
+        Log.d(TAG, "开始监听目录: " + observers.size());
+    }
+
+    public void stopWatching() {
+        if (!watching) return;
+        watching = false;
+        for (FileObserver observer : observers.values()) {
+            observer.stopWatching();
+        }
+        mainHandler.removeCallbacks(dispatchRunnable);
+        synchronized (changedDirectories) {
+            changedDirectories.clear();
+        }
+    }
+
+    private FileObserver createObserver(final String directoryPath) {
+        return new FileObserver(new File(directoryPath), EVENTS) {
+            @Override
+            public void onEvent(int event, String path) {
+                // 目录自身的事件path为null，子目录的增删也需要重新扫描，其余只关心支持的文件
+                if (path != null && (event & IS_DIRECTORY) == 0
+                        && !MediaFileTypes.isSupportedName(path)) {
+                    return;
+                }
+                synchronized (changedDirectories) {
+                    changedDirectories.add(directoryPath);
+                }
+                mainHandler.removeCallbacks(dispatchRunnable);
+                mainHandler.postDelayed(dispatchRunnable, DEBOUNCE_MS);
+            }
+        };
+    }
+}
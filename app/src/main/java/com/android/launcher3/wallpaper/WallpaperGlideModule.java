@@ -0,0 +1,116 @@
+package com.android.launcher3.wallpaper;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.content.res.Resources;
+import android.util.DisplayMetrics;
+import android.util.Log;
+import androidx.annotation.NonNull;
+import com.android.launcher3.R;
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.GlideBuilder;
+import com.bumptech.glide.Registry;
+import com.bumptech.glide.annotation.GlideModule;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.bumptech.glide.load.engine.bitmap_recycle.LruBitmapPool;
+import com.bumptech.glide.load.engine.cache.InternalCacheDiskCacheFactory;
+import com.bumptech.glide.load.engine.cache.LruResourceCache;
+import com.bumptech.glide.module.AppGlideModule;
+import com.bumptech.glide.request.RequestOptions;
+import java.io.InputStream;
+
+/**
+ * 按全屏壁纸配置Glide：内存缓存和位图池按屏幕尺寸和应用内存上限计算，
+ * 磁盘缓存只保存缩放后的结果，再次打开时不用重新解码原图；
+ * 大小可以在res/values/glide_cache.xml中按设备配置覆盖
+ */
+@GlideModule
+public final class WallpaperGlideModule extends AppGlideModule {
+    private static final String TAG = "WallpaperGlideModule";
+
+    private static final String DISK_CACHE_NAME = "wallpaper_glide";
+    // 内存缓存和位图池合计最多占应用内存上限的比例
+    private static final float MAX_MEMORY_RATIO = 0.33f;
+
+    private static LruResourceCache memoryCache;
+    private static LruBitmapPool bitmapPool;
+    private static long diskCacheBytes;
+
+    @Override
+    public void applyOptions(@NonNull Context context, @NonNull GlideBuilder builder) {
+        Resources resources = context.getResources();
+        DisplayMetrics metrics = resources.getDisplayMetrics();
+        ActivityManager activityManager =
+                (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+
+        long screenBytes = (long) metrics.widthPixels * metrics.heightPixels * 4;
+        int memoryScreens = resources.getInteger(R.integer.glide_memory_cache_screens);
+        int poolScreens = resources.getInteger(R.integer.glide_bitmap_pool_screens);
+        if (activityManager.isLowRamDevice()) {
+            memoryScreens = Math.max(memoryScreens / 2, 1);
+            poolScreens = Math.max(poolScreens / 2, 1);
+        }
+
+        long memoryBytes = memoryScreens * screenBytes;
+        long poolBytes = poolScreens * screenBytes;
+        long maxBytes = (long) (activityManager.getMemoryClass() * 1024L * 1024L * MAX_MEMORY_RATIO);
+        if (memoryBytes + poolBytes > maxBytes) {
+            // 超出预算时按比例缩小
+            float scale = (float) maxBytes / (memoryBytes + poolBytes);
+            memoryBytes = (long) (memoryBytes * scale);
+            poolBytes = (long) (poolBytes * scale);
+        }
+        diskCacheBytes = resources.getInteger(R.integer.glide_disk_cache_mb) * 1024L * 1024L;
+
+        memoryCache = new LruResourceCache(memoryBytes);
+        bitmapPool = new LruBitmapPool(poolBytes);
+        builder.setMemoryCache(memoryCache)
+                .setBitmapPool(bitmapPool)
+                .setDiskCache(new InternalCacheDiskCacheFactory(context, DISK_CACHE_NAME, diskCacheBytes))
+                // 原图本来就在本地，只缓存按页面尺寸缩放后的结果
+                .setDefaultRequestOptions(new RequestOptions()
+                        .diskCacheStrategy(DiskCacheStrategy.RESOURCE));
+
+        Log.d(TAG, "内存缓存: " + memoryBytes / 1024 + "KB, 位图池: " + poolBytes / 1024
+                + "KB, 磁盘缓存: " + diskCacheBytes / 1024 / 1024 + "MB");
+        reportCacheSizes();
+    }
+
+    @Override
+    public void registerComponents(@NonNull Context context, @NonNull Glide glide,
+            @NonNull Registry registry) {
+        registry.prepend(ImageItem.class, InputStream.class,
+                new ImageItemModelLoader.Factory<>(InputStream.class));
+    }
+
+    @Override
+    public boolean isManifestParsingEnabled() {
+        return false;
+    }
+
+    /**
+     * 内存缓存和位图池当前占用的字节数
+     */
+    public static long getCachedBytes() {
+        long bytes = 0L;
+        if (memoryCache != null) bytes += memoryCache.getCurrentSize();
+        if (bitmapPool != null) bytes += bitmapPool.getCurrentSize();
+        return bytes;
+    }
+
+    /**
+     * 把缓存的上限和当前占用写入性能指标
+     */
+    public static void reportCacheSizes() {
+        PerfMetrics metrics = PerfMetrics.get();
+        if (memoryCache != null) {
+            metrics.setGauge(PerfMetrics.GLIDE_MEMORY_CACHE_MAX, memoryCache.getMaxSize());
+            metrics.setGauge(PerfMetrics.GLIDE_MEMORY_CACHE_SIZE, memoryCache.getCurrentSize());
+        }
+        if (bitmapPool != null) {
+            metrics.setGauge(PerfMetrics.GLIDE_BITMAP_POOL_MAX, bitmapPool.getMaxSize());
+            metrics.setGauge(PerfMetrics.GLIDE_BITMAP_POOL_SIZE, bitmapPool.getCurrentSize());
+        }
+        metrics.setGauge(PerfMetrics.GLIDE_DISK_CACHE_MAX, diskCacheBytes);
+    }
+}
@@ -0,0 +1,386 @@
+package com.android.launcher3.wallpaper;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 后台扫描SDCard壁纸目录及其子目录，分批把结果回调到主线程
+ */
+public class WallpaperScanner {
+    private static final String TAG = "WallpaperScanner";
+
+    // 每批最多推送的条目数，避免一次性通知过多页面
+    private static final int BATCH_SIZE = 32;
+    private static final long NO_GENERATION = -1L;
+
+    public interface Callback {
+        /** 主线程回调，一批新扫描到的条目 */
+        void onBatch(List<ImageItem> batch);
+
+        /** 主线程回调，扫描结束（被取消时不会回调） */
+        void onComplete(int totalCount, long elapsedMs);
+    }
+
+    private final MediaCatalog catalog;
+    private final DirectoryWalker walker;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "wallpaper-scanner");
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private ScanTask currentTask;
+    private Future<?> currentFuture;
+    private ScanRules rules = ScanRules.DEFAULT;
+    private MediaStoreSource mediaStoreSource;
+    private Set<String> scannedDirectories = Collections.emptySet();
+
+    public WallpaperScanner(MediaCatalog catalog) {
+        this.catalog = catalog;
+        this.walker = new DirectoryWalker(catalog);
+    }
+
+    /**
+     * 设置子目录的扫描范围，下一次扫描生效
+     */
+    public void setScanRules(ScanRules rules) {
+        this.rules = rules;
+    }
+
+    /**
+     * 设置后先通过MediaStore取得已索引文件的元数据，再扫描目录补上索引中没有的文件
+     * （媒体扫描还没处理的新文件、没有权限看到的.pag等）；传null只扫描目录
+     */
+    public void setMediaStoreSource(MediaStoreSource source) {
+        this.mediaStoreSource = source;
+    }
+
+    /**
+     * 上一次完成的扫描访问过的目录（规范路径），在onComplete中可以取到本次的结果
+     */
+    public Set<String> getScannedDirectories() {
+        return scannedDirectories;
+    }
+
+    /**
+     * 开始扫描，会取消上一次未完成的扫描
+     * @param directories 需要扫描的目录，同一物理目录只扫描一次
+     * @param fallbackFiles 目录中没有找到文件时尝试直接添加的文件
+     */
+    public void scan(String[] directories, String[] fallbackFiles, Callback callback) {
+        start(new ScanTask(directories, fallbackFiles, rules, mediaStoreSource, NO_GENERATION, callback));
+    }
+
+    /**
+     * 进程被杀后恢复：目录缓存的版本号和保存时相同时直接按缓存展开，不访问文件系统；
+     * 不同或缓存中没有文件时退化为普通扫描
+     * @param generation 保存时的{@link #getCatalogGeneration()}
+     */
+    public void restore(String[] directories, String[] fallbackFiles, long generation, Callback callback) {
+        start(new ScanTask(directories, fallbackFiles, rules, mediaStoreSource, generation, callback));
+    }
+
+    /**
+     * 目录缓存的版本号，在onComplete中取到的是本次扫描后的值
+     */
+    public long getCatalogGeneration() {
+        return catalog.getGeneration();
+    }
+
+    private void start(ScanTask task) {
+        cancel();
+        currentTask = task;
+        currentFuture = executor.submit(task);
+    }
+
+    /**
+     * 标记目录内容已变化，下一次扫描时重新列出，按提交顺序在扫描线程执行
+     */
+    public void invalidate(Collection<String> directories) {
+        final List<String> copy = new ArrayList<>(directories);
+        executor.execute(() -> {
+            catalog.load();
+            for (String directory : copy) {
+                catalog.invalidateDirectory(canonicalPath(directory));
+            }
+        });
+    }
+
+    /**
+     * 取消当前扫描，已投递但未执行的回调也会被丢弃
+     */
+    public void cancel() {
+        if (currentTask != null) {
+            currentTask.cancelled = true;
+            currentTask = null;
+        }
+        if (currentFuture != null) {
+            currentFuture.cancel(true);
+            currentFuture = null;
+        }
+    }
+
+    /**
+     * 取消扫描并释放线程，Activity销毁时调用
+     */
+    public void shutdown() {
+        cancel();
+        executor.shutdownNow();
+        walker.shutdown();
+    }
+
+    private class ScanTask implements Runnable {
+        private final String[] directories;
+        private final String[] fallbackFiles;
+        private final ScanRules rules;
+        private final MediaStoreSource mediaStoreSource;
+        private final long restoreGeneration;
+        private final Callback callback;
+        private volatile boolean cancelled;
+
+        private List<ImageItem> pending = new ArrayList<>(BATCH_SIZE);
+        private int totalCount;
+
+        // MediaStore返回的文件（规范路径），目录扫描时跳过
+        private final Set<String> indexedPaths = new HashSet<>();
+        // MediaStore结果所在的目录，需要和目录扫描一起交给目录监听
+        private final Set<String> indexedDirectories = new HashSet<>();
+        private String lastIndexedDirectory;
+        private String lastCanonicalDirectory;
+        // 当前根目录中目录扫描补充的和已在MediaStore中的文件数
+        private int supplementedCount;
+        private int indexedCount;
+
+        ScanTask(String[] directories, String[] fallbackFiles, ScanRules rules,
+                MediaStoreSource mediaStoreSource, long restoreGeneration, Callback callback) {
+            this.directories = directories;
+            this.fallbackFiles = fallbackFiles;
+            this.rules = rules;
+            this.mediaStoreSource = mediaStoreSource;
+            this.restoreGeneration = restoreGeneration;
+            this.callback = callback;
+        }
+
+        @Override
+        public void run() {
+            long start = SystemClock.elapsedRealtime();
+            final Set<String> visitedDirectories = ConcurrentHashMap.newKeySet();
+
+            if (restoreGeneration != NO_GENERATION) {
+                restoreFromCatalog(visitedDirectories);
+                if (isCancelled()) return;
+                if (totalCount == 0) {
+                    visitedDirectories.clear();
+                }
+            }
+
+            if (totalCount == 0) {
+                if (mediaStoreSource != null) {
+                    long queryStart = PerfMetrics.now();
+                    // 先读目录缓存，条目创建时就带上缓存中的占位颜色
+                    catalog.load();
+                    mediaStoreSource.query(this::cachedPlaceholderColor, this::onIndexedItemFound);
+                    PerfMetrics.get().recordSince(PerfMetrics.SCAN_DIRECTORY + ":mediastore", queryStart);
+                    if (isCancelled()) return;
+                }
+
+                // 索引不一定完整，目录扫描只补充MediaStore中没有的文件；
+                // 未变化的目录直接用缓存，开销只是读取目录属性
+                scanDirectories(visitedDirectories);
+                visitedDirectories.addAll(indexedDirectories);
+            }
+            if (isCancelled()) return;
+
+            // 如果没有扫描到文件，尝试直接添加已知文件路径
+            if (totalCount == 0 && fallbackFiles != null) {
+                Log.d(TAG, "目录扫描未找到文件，尝试直接添加已知文件");
+                for (String filePath : fallbackFiles) {
+                    if (isCancelled()) return;
+                    if (FileAccessHelper.isFileAccessible(filePath)) {
+                        onItemFound(new ImageItem(filePath, new File(filePath).getName()));
+                    } else {
+                        Log.w(TAG, "文件不可访问: " + filePath);
+                    }
+                }
+            }
+
+            if (isCancelled()) return;
+            flush();
+
+            final int total = totalCount;
+            final long elapsed = SystemClock.elapsedRealtime() - start;
+            PerfMetrics.get().record(PerfMetrics.SCAN_TOTAL, elapsed * 1_000_000L);
+            mainHandler.post(() -> {
+                if (!cancelled) {
+                    scannedDirectories = Collections.unmodifiableSet(visitedDirectories);
+                    callback.onComplete(total, elapsed);
+                }
+            });
+
+            fillPlaceholderColors(visitedDirectories);
+        }
+
+        /**
+         * 结果已经交出后，低优先级为新文件补上占位颜色并写回目录缓存；
+         * 新的扫描开始时取消，没算完的下次继续
+         */
+        private void fillPlaceholderColors(Set<String> visitedDirectories) {
+            Thread thread = Thread.currentThread();
+            int priority = thread.getPriority();
+            thread.setPriority(Thread.MIN_PRIORITY);
+            try {
+                long fillStart = PerfMetrics.now();
+                int filled = catalog.fillPlaceholderColors(visitedDirectories, this::isCancelled);
+                if (filled > 0) {
+                    catalog.saveIfDirty();
+                    PerfMetrics.get().recordSince(PerfMetrics.SCAN_DIRECTORY + ":placeholders", fillStart);
+                    Log.d(TAG, "补充占位颜色: " + filled + " 个文件");
+                }
+            } finally {
+                thread.setPriority(priority);
+            }
+        }
+
+        private void scanDirectories(Set<String> visitedDirectories) {
+            catalog.load();
+
+            for (String directory : directories) {
+                if (isCancelled()) return;
+                String canonicalDirectory = canonicalPath(directory);
+                if (visitedDirectories.contains(canonicalDirectory)) {
+                    Log.d(TAG, "跳过重复目录: " + directory);
+                    continue;
+                }
+
+                Log.d(TAG, "扫描目录: " + directory);
+                long directoryStart = PerfMetrics.now();
+                supplementedCount = 0;
+                indexedCount = 0;
+                // 每个目录列出后立即按批推送，不等整棵目录树扫完
+                boolean completed = walker.walk(canonicalDirectory, rules, visitedDirectories,
+                        () -> cancelled, this::onDirectoryWalked);
+                PerfMetrics.get().recordSince(PerfMetrics.SCAN_DIRECTORY + ":" + canonicalDirectory, directoryStart);
+                if (!completed) return;
+                if (!indexedPaths.isEmpty()) {
+                    Log.d(TAG, "目录扫描补充: " + supplementedCount + " 个文件，已在MediaStore中: " + indexedCount + " 个");
+                }
+            }
+            catalog.saveIfDirty();
+        }
+
+        /**
+         * 一个目录扫描完成，MediaStore中已有的文件跳过
+         */
+        private boolean onDirectoryWalked(List<MediaCatalog.Entry> entries) {
+            for (MediaCatalog.Entry entry : entries) {
+                if (!indexedPaths.isEmpty() && indexedPaths.contains(entry.getPath())) {
+                    indexedCount++;
+                    continue;
+                }
+                if (!onItemFound(new ImageItem(entry))) return false;
+                supplementedCount++;
+            }
+            return true;
+        }
+
+        private void restoreFromCatalog(Set<String> visitedDirectories) {
+            catalog.load();
+            if (catalog.getGeneration() != restoreGeneration) {
+                Log.d(TAG, "目录缓存已变化，重新扫描");
+                return;
+            }
+            for (String directory : directories) {
+                if (isCancelled()) return;
+                String canonicalDirectory = canonicalPath(directory);
+                if (visitedDirectories.contains(canonicalDirectory)) continue;
+                boolean completed = walker.walkCached(canonicalDirectory, rules, visitedDirectories,
+                        () -> cancelled, entries -> {
+                            for (MediaCatalog.Entry entry : entries) {
+                                if (!onItemFound(new ImageItem(entry))) return false;
+                            }
+                            return true;
+                        });
+                if (!completed) return;
+            }
+            Log.d(TAG, "从目录缓存恢复: " + totalCount + " 个文件");
+        }
+
+        /**
+         * MediaStore中查到的条目，记录规范路径和所在目录
+         */
+        private boolean onIndexedItemFound(ImageItem item) {
+            indexedPaths.add(canonicalDirectoryOf(item.getDirectory()) + File.separator + item.getFileName());
+            return onItemFound(item);
+        }
+
+        /**
+         * MediaStore条目创建前，从目录缓存中取同一文件的占位颜色
+         */
+        private int cachedPlaceholderColor(String directory, String name, long size, long lastModified) {
+            return catalog.getCachedPlaceholderColor(canonicalDirectoryOf(directory), name, size, lastModified);
+        }
+
+        /**
+         * MediaStore结果按目录排序，同一目录只解析一次规范路径
+         */
+        private String canonicalDirectoryOf(String directory) {
+            if (!directory.equals(lastIndexedDirectory)) {
+                lastIndexedDirectory = directory;
+                lastCanonicalDirectory = canonicalPath(directory);
+                indexedDirectories.add(lastCanonicalDirectory);
+            }
+            return lastCanonicalDirectory;
+        }
+
+        private boolean onItemFound(ImageItem item) {
+            if (isCancelled()) {
+                return false;
+            }
+            pending.add(item);
+            totalCount++;
+            if (pending.size() >= BATCH_SIZE) {
+                flush();
+            }
+            return true;
+        }
+
+        private void flush() {
+            if (pending.isEmpty()) return;
+
+            final List<ImageItem> batch = pending;
+            pending = new ArrayList<>(BATCH_SIZE);
+            mainHandler.post(() -> {
+                if (!cancelled) {
+                    callback.onBatch(batch);
+                }
+            });
+        }
+
+        private boolean isCancelled() {
+            return cancelled || Thread.currentThread().isInterrupted();
+        }
+    }
+
+    private static String canonicalPath(String path) {
+        try {
+            return new File(path).getCanonicalPath();
+        } catch (IOException | SecurityException e) {
+            return path;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.android.launcher3.wallpaper;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * MediaFileTypes的扩展名粗筛和文件头识别
+ */
+public class MediaFileTypesTest {
+
+    private static final byte[] PNG = bytes(0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A, 0, 0, 0, 0x0D);
+    private static final byte[] JPEG = bytes(0xFF, 0xD8, 0xFF, 0xE0, 0, 0x10, 'J', 'F', 'I', 'F', 0, 1);
+
+    @Test
+    public void sniff_png() {
+        assertEquals(MediaFileTypes.FORMAT_PNG, sniff(PNG));
+    }
+
+    @Test
+    public void sniff_jpeg() {
+        assertEquals(MediaFileTypes.FORMAT_JPEG, sniff(JPEG));
+    }
+
+    @Test
+    public void sniff_webp() {
+        assertEquals(MediaFileTypes.FORMAT_WEBP, sniff(concat(ascii("RIFF"), bytes(0x24, 0, 0, 0), ascii("WEBP"))));
+    }
+
+    @Test
+    public void sniff_riffWithoutWebp() {
+        // RIFF容器里的其它格式，例如WAV
+        assertEquals(MediaFileTypes.FORMAT_UNKNOWN, sniff(concat(ascii("RIFF"), bytes(0x24, 0, 0, 0), ascii("WAVE"))));
+    }
+
+    @Test
+    public void sniff_heifBrands() {
+        for (String brand : new String[] {"heic", "heix", "hevc", "mif1", "msf1"}) {
+            assertEquals(brand, MediaFileTypes.FORMAT_HEIF, sniff(ftyp(brand)));
+        }
+    }
+
+    @Test
+    public void sniff_otherFtypBrand() {
+        // MP4视频同样以ftyp开头，不能当作HEIF
+        assertEquals(MediaFileTypes.FORMAT_UNKNOWN, sniff(ftyp("isom")));
+    }
+
+    @Test
+    public void sniff_gif() {
+        assertEquals(MediaFileTypes.FORMAT_GIF, sniff(concat(ascii("GIF89a"), bytes(1, 0, 1, 0, 0, 0))));
+        assertEquals(MediaFileTypes.FORMAT_GIF, sniff(concat(ascii("GIF87a"), bytes(1, 0, 1, 0, 0, 0))));
+    }
+
+    @Test
+    public void sniff_pag() {
+        assertEquals(MediaFileTypes.FORMAT_PAG, sniff(concat(ascii("PAG"), bytes(1, 0, 0, 0, 0))));
+    }
+
+    @Test
+    public void sniff_emptyHeader() {
+        assertEquals(MediaFileTypes.FORMAT_UNKNOWN, MediaFileTypes.sniff(new byte[MediaFileTypes.HEADER_SIZE], 0));
+    }
+
+    @Test
+    public void sniff_truncatedHeader() {
+        // 有效长度不足时不能读到length之后的旧数据
+        assertEquals(MediaFileTypes.FORMAT_UNKNOWN, MediaFileTypes.sniff(PNG, 7));
+        assertEquals(MediaFileTypes.FORMAT_UNKNOWN, MediaFileTypes.sniff(JPEG, 2));
+        assertEquals(MediaFileTypes.FORMAT_JPEG, MediaFileTypes.sniff(JPEG, 3));
+
+        byte[] webp = concat(ascii("RIFF"), bytes(0x24, 0, 0, 0), ascii("WEBP"));
+        assertEquals(MediaFileTypes.FORMAT_UNKNOWN, MediaFileTypes.sniff(webp, 11));
+        assertEquals(MediaFileTypes.FORMAT_UNKNOWN, MediaFileTypes.sniff(ftyp("heic"), 11));
+    }
+
+    @Test
+    public void sniff_shortArray() {
+        // 文件本身比HEADER_SIZE短
+        assertEquals(MediaFileTypes.FORMAT_PAG, sniff(ascii("PAG")));
+        assertEquals(MediaFileTypes.FORMAT_UNKNOWN, sniff(ascii("PA")));
+        assertEquals(MediaFileTypes.FORMAT_UNKNOWN, sniff(ascii("RIFF")));
+    }
+
+    @Test
+    public void sniff_mislabeledExtension() {
+        // 扩展名是.png，内容其实是JPEG，以文件头为准
+        String name = "wallpaper.png";
+        assertTrue(MediaFileTypes.isSupportedName(name));
+        assertEquals(MediaFileTypes.FORMAT_PNG, MediaFileTypes.formatForName(name));
+        assertEquals(MediaFileTypes.FORMAT_JPEG, sniff(JPEG));
+    }
+
+    @Test
+    public void formatForName_ignoresCase() {
+        assertEquals(MediaFileTypes.FORMAT_JPEG, MediaFileTypes.formatForName("A.JPEG"));
+        assertEquals(MediaFileTypes.FORMAT_HEIF, MediaFileTypes.formatForName("a.Heic"));
+        assertEquals(MediaFileTypes.FORMAT_PAG, MediaFileTypes.formatForName("a.PAG"));
+        assertEquals(MediaFileTypes.FORMAT_UNKNOWN, MediaFileTypes.formatForName("a.txt"));
+    }
+
+    @Test
+    public void isSupportedName_rejectsBareSuffix() {
+        assertTrue(MediaFileTypes.isSupportedName(".png"));
+        assertFalse(MediaFileTypes.isSupportedName("png"));
+        assertFalse(MediaFileTypes.isSupportedName("a.png.txt"));
+        assertFalse(MediaFileTypes.isSupportedName(""));
+    }
+
+    private static int sniff(byte[] header) {
+        return MediaFileTypes.sniff(header, header.length);
+    }
+
+    private static byte[] ftyp(String brand) {
+        return concat(bytes(0, 0, 0, 0x18), ascii("ftyp"), ascii(brand));
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] bytes(int... values) {
+        byte[] result = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = (byte) values[i];
+        }
+        return result;
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        int length = 0;
+        for (byte[] part : parts) {
+            length += part.length;
+        }
+        byte[] result = new byte[length];
+        int offset = 0;
+        for (byte[] part : parts) {
+            System.arraycopy(part, 0, result, offset, part.length);
+            offset += part.length;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,82 @@
+package com.android.launcher3.wallpaper.jmh;
+
+import com.android.launcher3.wallpaper.MediaFileTypes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 列出目录并按扩展名过滤、排序，对应MediaCatalog刷新目录时的文件名处理
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DirectoryListingBenchmark {
+    private static final String[] EXTENSIONS = {
+        ".png", ".jpg", ".JPEG", ".pag", ".PNG", ".txt"
+    };
+
+    @Param({"1000", "10000", "50000"})
+    public int fileCount;
+
+    private Path directory;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("wallpaper-jmh");
+        for (int i = 0; i < fileCount; i++) {
+            Files.createFile(directory.resolve("wallpaper_" + i + EXTENSIONS[i % EXTENSIONS.length]));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Benchmark
+    public List<String> listAndFilter() {
+        String[] names = directory.toFile().list();
+        List<String> result = new ArrayList<>();
+        if (names == null) return result;
+        Arrays.sort(names);
+        for (String name : names) {
+            if (MediaFileTypes.isSupportedName(name)) {
+                result.add(name);
+            }
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<String> listFilesAndStat() {
+        File[] files = directory.toFile().listFiles();
+        List<String> result = new ArrayList<>();
+        if (files == null) return result;
+        for (File file : files) {
+            if (file.isFile() && file.canRead() && MediaFileTypes.isSupportedName(file.getName())) {
+                result.add(file.getAbsolutePath());
+            }
+        }
+        return result;
+    }
+}
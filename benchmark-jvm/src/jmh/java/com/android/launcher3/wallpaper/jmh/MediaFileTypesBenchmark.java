@@ -0,0 +1,67 @@
+package com.android.launcher3.wallpaper.jmh;
+
+import com.android.launcher3.wallpaper.MediaFileTypes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 文件名类型判断（和原先toLowerCase后endsWith的写法对比）以及文件头格式识别
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MediaFileTypesBenchmark {
+    private static final String[] EXTENSIONS = {
+        ".png", ".jpg", ".JPEG", ".pag", ".PNG", ".txt"
+    };
+
+    private String[] names;
+    private byte[][] headers;
+
+    @Setup
+    public void setUp() {
+        names = new String[1000];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = "wallpaper_" + i + EXTENSIONS[i % EXTENSIONS.length];
+        }
+        headers = new byte[][] {
+            {(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A, 0, 0, 0, 0x0D},
+            {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0, 0, 0x10, 'J', 'F', 'I', 'F', 0, 1},
+            {'R', 'I', 'F', 'F', 0, 0, 0, 0, 'W', 'E', 'B', 'P'},
+            {0, 0, 0, 0x18, 'f', 't', 'y', 'p', 'h', 'e', 'i', 'c'},
+            {'G', 'I', 'F', '8', '9', 'a', 0, 0, 0, 0, 0, 0},
+            {'P', 'A', 'G', 1, 0, 0, 0, 0, 0, 0, 0, 0}
+        };
+    }
+
+    @Benchmark
+    public void sniff(Blackhole blackhole) {
+        for (byte[] header : headers) {
+            blackhole.consume(MediaFileTypes.sniff(header, header.length));
+        }
+    }
+
+    @Benchmark
+    public void isSupportedName(Blackhole blackhole) {
+        for (String name : names) {
+            blackhole.consume(MediaFileTypes.isSupportedName(name));
+        }
+    }
+
+    @Benchmark
+    public void lowerCaseEndsWith(Blackhole blackhole) {
+        for (String name : names) {
+            String lower = name.toLowerCase(Locale.ROOT);
+            blackhole.consume(lower.endsWith(".png") || lower.endsWith(".jpg")
+                    || lower.endsWith(".jpeg") || lower.endsWith(".pag"));
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.android.launcher3.wallpaper;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * ImageItem的类型判断、构造和稳定ID的哈希计算
+ */
+@RunWith(AndroidJUnit4.class)
+public class ImageItemBenchmark {
+    private static final int COUNT = 1000;
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private final String[] paths = buildPaths();
+
+    private static String[] buildPaths() {
+        String[] names = SyntheticDirectories.fileNames(COUNT);
+        String[] paths = new String[COUNT];
+        for (int i = 0; i < COUNT; i++) {
+            paths[i] = "/storage/emulated/0/LionWallpaper/" + names[i];
+        }
+        return paths;
+    }
+
+    @Test
+    public void getFileType() {
+        BenchmarkState state = benchmarkRule.getState();
+        int pagCount = 0;
+        while (state.keepRunning()) {
+            for (String path : paths) {
+                if (ImageItem.getFileType(path) == ImageItem.TYPE_PAG) {
+                    pagCount++;
+                }
+            }
+        }
+        if (pagCount < 0) throw new AssertionError();
+    }
+
+    @Test
+    public void constructFromPath() {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            for (String path : paths) {
+                new ImageItem(path, path.substring(path.lastIndexOf('/') + 1));
+            }
+        }
+    }
+
+    @Test
+    public void stableIdOf() {
+        // 稳定ID在构造时计算，这里直接测量哈希本身；目录字符串和扫描结果一样在条目间共享
+        String directory = "/storage/emulated/0/LionWallpaper";
+        String[] names = new String[COUNT];
+        for (int i = 0; i < COUNT; i++) {
+            names[i] = paths[i].substring(directory.length() + 1);
+        }
+
+        BenchmarkState state = benchmarkRule.getState();
+        long sum = 0;
+        while (state.keepRunning()) {
+            for (String name : names) {
+                sum += ImageItem.stableIdOf(directory, name, null);
+            }
+        }
+        if (sum == 42) throw new AssertionError();
+    }
+}
@@ -0,0 +1,124 @@
+package com.android.launcher3.wallpaper;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.recyclerview.widget.DiffUtil;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 大列表上的列表重建和Adapter差异计算（AsyncListDiffer在后台线程做的工作）
+ */
+@RunWith(Parameterized.class)
+public class ListUpdateBenchmark {
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    @Parameterized.Parameters(name = "items={0}")
+    public static Collection<Object[]> parameters() {
+        return Arrays.asList(new Object[][] {{1000}, {10000}});
+    }
+
+    private final List<ImageItem> items;
+
+    public ListUpdateBenchmark(int itemCount) {
+        items = new ArrayList<>(itemCount);
+        for (int i = 0; i < 6; i++) {
+            items.add(new ImageItem(i + 1, "local_" + i));
+        }
+        String[] names = SyntheticDirectories.fileNames(itemCount);
+        for (String name : names) {
+            items.add(new ImageItem("/storage/emulated/0/LionWallpaper/" + name, name));
+        }
+    }
+
+    /**
+     * 和重新加载时一样：保留本地资源，再加入新扫描到的SDCard文件
+     */
+    @Test
+    public void rebuildList() {
+        List<ImageItem> scanned = new ArrayList<>();
+        for (ImageItem item : items) {
+            if (item.isFromSDCard()) scanned.add(item);
+        }
+
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            List<ImageItem> rebuilt = new ArrayList<>();
+            for (ImageItem item : items) {
+                if (item.isFromLocal()) rebuilt.add(item);
+            }
+            rebuilt.addAll(scanned);
+        }
+    }
+
+    @Test
+    public void diffUnchanged() {
+        List<ImageItem> copy = new ArrayList<>(items);
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            DiffUtil.calculateDiff(new ListCallback(items, copy));
+        }
+    }
+
+    @Test
+    public void diffAppendBatch() {
+        List<ImageItem> appended = new ArrayList<>(items);
+        for (int i = 0; i < 32; i++) {
+            appended.add(new ImageItem("/storage/emulated/0/LionWallpaper/new_" + i + ".png", "new_" + i));
+        }
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            DiffUtil.calculateDiff(new ListCallback(items, appended));
+        }
+    }
+
+    @Test
+    public void diffRemoveScattered() {
+        List<ImageItem> removed = new ArrayList<>(items);
+        for (int i = removed.size() - 1; i >= 0; i -= 100) {
+            removed.remove(i);
+        }
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            DiffUtil.calculateDiff(new ListCallback(items, removed));
+        }
+    }
+
+    /**
+     * 用Adapter自己的ItemCallback比较，和AsyncListDiffer的行为一致
+     */
+    private static class ListCallback extends DiffUtil.Callback {
+        private final List<ImageItem> oldList;
+        private final List<ImageItem> newList;
+
+        ListCallback(List<ImageItem> oldList, List<ImageItem> newList) {
+            this.oldList = oldList;
+            this.newList = newList;
+        }
+
+        @Override
+        public int getOldListSize() { return oldList.size(); }
+
+        @Override
+        public int getNewListSize() { return newList.size(); }
+
+        @Override
+        public boolean areItemsTheSame(int oldPosition, int newPosition) {
+            return ImagePagerAdapter.DIFF_CALLBACK.areItemsTheSame(
+                    oldList.get(oldPosition), newList.get(newPosition));
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldPosition, int newPosition) {
+            return ImagePagerAdapter.DIFF_CALLBACK.areContentsTheSame(
+                    oldList.get(oldPosition), newList.get(newPosition));
+        }
+    }
+}
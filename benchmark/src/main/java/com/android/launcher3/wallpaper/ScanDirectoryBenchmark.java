@@ -0,0 +1,108 @@
+package com.android.launcher3.wallpaper;
+
+import android.content.Context;
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.platform.app.InstrumentationRegistry;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.assertFalse;
+
+/**
+ * 目录扫描：FileAccessHelper直接扫描，MediaCatalog在目录变化/未变化时的刷新，以及多层子目录的递归扫描
+ */
+@RunWith(Parameterized.class)
+public class ScanDirectoryBenchmark {
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    @Parameterized.Parameters(name = "files={0}")
+    public static Collection<Object[]> parameters() {
+        return Arrays.asList(new Object[][] {{1000}, {10000}, {50000}});
+    }
+
+    private final int fileCount;
+    private Context context;
+    private File directory;
+    private File nestedDirectory;
+
+    public ScanDirectoryBenchmark(int fileCount) {
+        this.fileCount = fileCount;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        directory = SyntheticDirectories.obtain(context.getCacheDir(), fileCount);
+        nestedDirectory = SyntheticDirectories.obtainNested(context.getCacheDir(), fileCount);
+    }
+
+    @Test
+    public void scanDirectory() {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            List<String> files = FileAccessHelper.scanDirectory(directory.getAbsolutePath());
+            assertFalse(files.isEmpty());
+        }
+    }
+
+    @Test
+    public void catalogRefreshChangedDirectory() throws Exception {
+        String path = directory.getCanonicalPath();
+        MediaCatalog catalog = new MediaCatalog(context);
+        catalog.refreshDirectory(path);
+
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            // 目录被标记为变化后重新列出，未变化的文件复用缓存条目
+            state.pauseTiming();
+            catalog.invalidateDirectory(path);
+            state.resumeTiming();
+            catalog.refreshDirectory(path);
+        }
+    }
+
+    @Test
+    public void catalogRefreshUnchangedDirectory() throws Exception {
+        String path = directory.getCanonicalPath();
+        MediaCatalog catalog = new MediaCatalog(context);
+        catalog.refreshDirectory(path);
+
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            catalog.refreshDirectory(path);
+        }
+    }
+
+    @Test
+    public void walkNestedDirectories() throws Exception {
+        String path = nestedDirectory.getCanonicalPath();
+
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            // 每次使用新的目录缓存，测量没有缓存时的完整递归扫描
+            state.pauseTiming();
+            MediaCatalog catalog = new MediaCatalog(context);
+            DirectoryWalker walker = new DirectoryWalker(catalog);
+            state.resumeTiming();
+
+            List<MediaCatalog.Entry> entries = new ArrayList<>();
+            walker.walk(path, ScanRules.DEFAULT, ConcurrentHashMap.newKeySet(), () -> false, entries::addAll);
+            assertFalse(entries.isEmpty());
+
+            state.pauseTiming();
+            walker.shutdown();
+            state.resumeTiming();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.android.launcher3.wallpaper;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * 基准测试用的合成壁纸目录，按文件数缓存在测试应用的缓存目录中，只创建一次
+ */
+final class SyntheticDirectories {
+    // 和真实壁纸目录相近的扩展名分布，包含大小写混合和不支持的文件
+    private static final String[] EXTENSIONS = {
+        ".png", ".jpg", ".JPEG", ".pag", ".PNG", ".txt"
+    };
+
+    private SyntheticDirectories() {
+    }
+
+    static File obtain(File cacheDir, int fileCount) throws IOException {
+        File directory = new File(cacheDir, "synthetic_" + fileCount);
+        File marker = new File(directory, ".complete");
+        if (marker.exists()) {
+            return directory;
+        }
+
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("无法创建目录: " + directory);
+        }
+        for (int i = 0; i < fileCount; i++) {
+            File file = new File(directory, "wallpaper_" + i + EXTENSIONS[i % EXTENSIONS.length]);
+            if (!file.exists() && !file.createNewFile()) {
+                throw new IOException("无法创建文件: " + file);
+            }
+        }
+        if (!marker.createNewFile()) {
+            throw new IOException("无法创建标记文件: " + marker);
+        }
+        return directory;
+    }
+
+    /**
+     * 按主题分成多层子目录的壁纸库：10个主题目录，每个主题下再分10个子目录
+     */
+    static File obtainNested(File cacheDir, int fileCount) throws IOException {
+        File root = new File(cacheDir, "synthetic_nested_" + fileCount);
+        File marker = new File(root, ".complete");
+        if (marker.exists()) {
+            return root;
+        }
+
+        for (int i = 0; i < fileCount; i++) {
+            File directory = new File(root, "theme_" + (i % 10) + File.separator + "set_" + (i / 10 % 10));
+            if (!directory.exists() && !directory.mkdirs()) {
+                throw new IOException("无法创建目录: " + directory);
+            }
+            File file = new File(directory, "wallpaper_" + i + EXTENSIONS[i % EXTENSIONS.length]);
+            if (!file.exists() && !file.createNewFile()) {
+                throw new IOException("无法创建文件: " + file);
+            }
+        }
+        if (!marker.createNewFile()) {
+            throw new IOException("无法创建标记文件: " + marker);
+        }
+        return root;
+    }
+
+    static String[] fileNames(int fileCount) {
+        String[] names = new String[fileCount];
+        for (int i = 0; i < fileCount; i++) {
+            names[i] = "wallpaper_" + i + EXTENSIONS[i % EXTENSIONS.length];
+        }
+        return names;
+    }
+}
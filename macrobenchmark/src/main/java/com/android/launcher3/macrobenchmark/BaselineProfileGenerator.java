@@ -0,0 +1,36 @@
+package com.android.launcher3.macrobenchmark;
+
+import androidx.benchmark.macro.junit4.BaselineProfileRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import kotlin.Unit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * 生成app的基线配置文件：启动、ViewPager初始化、Glide和PAG的首次加载，以及翻页
+ */
+@RunWith(AndroidJUnit4.class)
+public class BaselineProfileGenerator {
+    @Rule
+    public BaselineProfileRule baselineProfileRule = new BaselineProfileRule();
+
+    @Test
+    public void generate() {
+        baselineProfileRule.collect(
+                WallpaperJourneys.PACKAGE_NAME,
+                15,
+                3,
+                null,
+                true,
+                false,
+                rule -> true,
+                scope -> {
+                    WallpaperJourneys.grantStoragePermissions(scope);
+                    scope.pressHome();
+                    WallpaperJourneys.startAndWaitForFirstPage(scope);
+                    WallpaperJourneys.swipeThroughPages(scope, 8);
+                    return Unit.INSTANCE;
+                });
+    }
+}
@@ -0,0 +1,54 @@
+package com.android.launcher3.macrobenchmark;
+
+import androidx.benchmark.macro.BaselineProfileMode;
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.FrameTimingMetric;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import kotlin.Unit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import java.util.Collections;
+
+/**
+ * 翻页过程中的帧耗时，每次迭代都从冷启动开始，包含图片和PAG页面的首次加载
+ */
+@RunWith(AndroidJUnit4.class)
+public class SwipeBenchmark {
+    private static final int ITERATIONS = 5;
+    private static final int PAGE_COUNT = 8;
+
+    @Rule
+    public MacrobenchmarkRule benchmarkRule = new MacrobenchmarkRule();
+
+    @Test
+    public void swipeNoCompilation() {
+        swipe(new CompilationMode.None());
+    }
+
+    @Test
+    public void swipeBaselineProfile() {
+        swipe(new CompilationMode.Partial(BaselineProfileMode.Require));
+    }
+
+    private void swipe(CompilationMode compilationMode) {
+        benchmarkRule.measureRepeated(
+                WallpaperJourneys.PACKAGE_NAME,
+                Collections.singletonList(new FrameTimingMetric()),
+                compilationMode,
+                StartupMode.COLD,
+                ITERATIONS,
+                scope -> {
+                    WallpaperJourneys.grantStoragePermissions(scope);
+                    scope.pressHome();
+                    WallpaperJourneys.startAndWaitForFirstPage(scope);
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    WallpaperJourneys.swipeThroughPages(scope, PAGE_COUNT);
+                    return Unit.INSTANCE;
+                });
+    }
+}
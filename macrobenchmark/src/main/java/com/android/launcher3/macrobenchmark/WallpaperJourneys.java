@@ -0,0 +1,64 @@
+package com.android.launcher3.macrobenchmark;
+
+import androidx.benchmark.macro.MacrobenchmarkScope;
+import androidx.test.uiautomator.By;
+import androidx.test.uiautomator.Direction;
+import androidx.test.uiautomator.UiDevice;
+import androidx.test.uiautomator.UiObject2;
+import androidx.test.uiautomator.Until;
+
+/**
+ * 启动、翻页等用户操作，基准测试和基线配置文件生成共用
+ */
+final class WallpaperJourneys {
+    static final String PACKAGE_NAME = "com.android.launcher3";
+
+    private static final long TIMEOUT_MS = 5000;
+
+    private WallpaperJourneys() {
+    }
+
+    /**
+     * 预先授予存储权限，避免启动时弹出权限对话框挡住ViewPager
+     */
+    static void grantStoragePermissions(MacrobenchmarkScope scope) {
+        UiDevice device = scope.getDevice();
+        try {
+            device.executeShellCommand("pm grant " + PACKAGE_NAME + " android.permission.READ_EXTERNAL_STORAGE");
+            device.executeShellCommand("pm grant " + PACKAGE_NAME + " android.permission.READ_MEDIA_IMAGES");
+        } catch (Exception e) {
+            // 不同系统版本只声明其中一个运行时权限，授予失败不影响另一个
+        }
+    }
+
+    /**
+     * 启动ImageViewerActivity并等待第一页显示
+     */
+    static void startAndWaitForFirstPage(MacrobenchmarkScope scope) {
+        scope.startActivityAndWait();
+        UiDevice device = scope.getDevice();
+        if (!device.wait(Until.hasObject(By.res(PACKAGE_NAME, "viewPager")), TIMEOUT_MS)) {
+            throw new IllegalStateException("ViewPager没有显示");
+        }
+        device.wait(Until.hasObject(By.res(PACKAGE_NAME, "tvFileName")), TIMEOUT_MS);
+    }
+
+    /**
+     * 向后翻pageCount页再翻回来；内置6张PNG，
+     * PAG页需要预先放到/sdcard/LionWallpaper下
+     */
+    static void swipeThroughPages(MacrobenchmarkScope scope, int pageCount) {
+        UiDevice device = scope.getDevice();
+        UiObject2 pager = device.findObject(By.res(PACKAGE_NAME, "viewPager"));
+        // 两侧留出边距，避免触发系统返回手势
+        pager.setGestureMargin(device.getDisplayWidth() / 5);
+        for (int i = 0; i < pageCount; i++) {
+            pager.swipe(Direction.LEFT, 1.0f);
+            device.waitForIdle();
+        }
+        for (int i = 0; i < pageCount; i++) {
+            pager.swipe(Direction.RIGHT, 1.0f);
+            device.waitForIdle();
+        }
+    }
+}